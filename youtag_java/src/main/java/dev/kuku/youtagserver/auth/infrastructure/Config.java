@@ -53,6 +53,9 @@ class Config {
         // Allow specific headers
         configuration.addAllowedHeader("*" );
 
+        // Let clients read the keyset pagination cursor
+        configuration.addExposedHeader("X-Next-Cursor");
+
         // Allow credentials (cookies, authorization headers, etc.)
         configuration.setAllowCredentials(true);
 
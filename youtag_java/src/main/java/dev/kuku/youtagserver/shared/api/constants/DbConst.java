@@ -27,14 +27,55 @@ public class DbConst {
 
     public static class UserVideo {
         public static final String TABLE_NAME = "user_video";
+        public static final String SAVED_AT = "saved_at";
+    }
+
+    public static class UserVideoCount {
+        public static final String TABLE_NAME = "user_video_count";
+        public static final String VIDEO_COUNT = "video_count";
     }
 
 
     public static class UserTag {
         public static final String TABLE_NAME = "user_tag";
+        public static final String VIDEO_COUNT = "video_count";
+    }
+
+    public static class UserTagCount {
+        public static final String TABLE_NAME = "user_tag_count";
+        public static final String TAG_COUNT = "tag_count";
     }
 
     public static class UserVideoTag {
         public static final String TABLE_NAME = "user_video_tag";
     }
+
+    public static class VideoTagStat {
+        public static final String TABLE_NAME = "video_tag_stat";
+        public static final String USER_COUNT = "user_count";
+    }
+
+    public static class TagCooccurrence {
+        public static final String TABLE_NAME = "tag_cooccurrence";
+        public static final String OTHER_TAG = "other_tag";
+        public static final String VIDEO_COUNT = "video_count";
+    }
+
+    public static class CollectorCheckpoint {
+        public static final String TABLE_NAME = "collector_checkpoint";
+        public static final String SCAN = "scan";
+        public static final String AFTER_KEY = "after_key";
+        public static final String AFTER_SUB_KEY = "after_sub_key";
+    }
+
+    public static class AccountDeletion {
+        public static final String TABLE_NAME = "account_deletion";
+        public static final String PHASE = "phase";
+        public static final String TOTAL_VIDEOS = "total_videos";
+        public static final String TOTAL_TAGS = "total_tags";
+        public static final String DELETED_VIDEO_TAGS = "deleted_video_tags";
+        public static final String DELETED_VIDEOS = "deleted_videos";
+        public static final String DELETED_TAGS = "deleted_tags";
+        public static final String STARTED = "started";
+    }
 }
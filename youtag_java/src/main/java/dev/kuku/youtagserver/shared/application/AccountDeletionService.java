@@ -0,0 +1,101 @@
+package dev.kuku.youtagserver.shared.application;
+
+import dev.kuku.youtagserver.shared.domain.AccountDeletion;
+import dev.kuku.youtagserver.shared.exceptions.AccountDeletionNotFound;
+import dev.kuku.youtagserver.shared.infrastructure.AccountDeletionRepo;
+import dev.kuku.youtagserver.shared.models.AccountDeletionProgress;
+import dev.kuku.youtagserver.user_tag.api.UserTagService;
+import dev.kuku.youtagserver.user_video.api.UserVideoService;
+import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Deletes the saved videos and tags of a deleted user.
+ * <p>
+ * Rows are deleted in bounded batches, each in its own short transaction together with the update of the
+ * {@link AccountDeletion} progress, so a large library doesn't hold locks that stall the writes of other users. Every
+ * batch deletes whatever is left, so after a restart the deletion simply runs again and continues where it stopped.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class AccountDeletionService {
+    /**
+     * Rows deleted per transaction
+     */
+    static final int BATCH_SIZE = 1000;
+    final AccountDeletionRepo repo;
+    final UserVideoTagService userVideoTagService;
+    final UserVideoService userVideoService;
+    final UserTagService userTagService;
+    final TransactionTemplate transactionTemplate;
+
+    /**
+     * Delete all data of user. Tags of videos go first so that the tags of user stay until nothing refers to them
+     *
+     * @param userId user that was deleted
+     */
+    public void deleteDataOfUser(String userId) {
+        log.info("Deleting data of user {}", userId);
+        transactionTemplate.executeWithoutResult(status -> start(userId));
+        deleteInBatches(userId, AccountDeletion.Phase.VIDEO_TAGS, limit -> userVideoTagService.deleteAllTagsFromAllVideosOfUser(userId, limit));
+        deleteInBatches(userId, AccountDeletion.Phase.VIDEOS, limit -> userVideoService.deleteAllSavedVideosFromUser(userId, limit));
+        deleteInBatches(userId, AccountDeletion.Phase.TAGS, limit -> userTagService.deleteAllTagsOfUser(userId, limit));
+        AccountDeletion deletion = transactionTemplate.execute(status -> {
+            AccountDeletion completed = repo.findById(userId).orElseThrow();
+            completed.setPhase(AccountDeletion.Phase.COMPLETED);
+            completed.setUpdated(LocalDateTime.now());
+            return completed;
+        });
+        log.info("Deleted data of user {}: {}", userId, deletion);
+    }
+
+    /**
+     * Get the progress of deleting the data of user
+     *
+     * @throws AccountDeletionNotFound if the user wasn't deleted
+     */
+    public AccountDeletionProgress getProgress(String userId) throws AccountDeletionNotFound {
+        return repo.findById(userId).map(AccountDeletionProgress::of).orElseThrow(() -> new AccountDeletionNotFound(userId));
+    }
+
+    /**
+     * Record the start of the deletion. A deletion that was interrupted keeps its progress
+     */
+    private void start(String userId) {
+        AccountDeletion deletion = repo.findById(userId).orElse(null);
+        if (deletion != null && deletion.getPhase() != AccountDeletion.Phase.COMPLETED) {
+            log.info("Resuming deletion of data of user {} from {}", userId, deletion);
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        repo.save(new AccountDeletion(userId, AccountDeletion.Phase.VIDEO_TAGS, userVideoService.getSavedVideosCountOfUser(userId),
+                userTagService.getTagCountOfUser(userId), 0, 0, 0, now, now));
+    }
+
+    private void deleteInBatches(String userId, AccountDeletion.Phase phase, IntUnaryOperator deleteBatch) {
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> {
+                int count = deleteBatch.applyAsInt(BATCH_SIZE);
+                AccountDeletion deletion = repo.findById(userId).orElseThrow();
+                deletion.setPhase(phase);
+                switch (phase) {
+                    case VIDEO_TAGS -> deletion.setDeletedVideoTags(deletion.getDeletedVideoTags() + count);
+                    case VIDEOS -> deletion.setDeletedVideos(deletion.getDeletedVideos() + count);
+                    case TAGS -> deletion.setDeletedTags(deletion.getDeletedTags() + count);
+                    default -> throw new IllegalArgumentException(phase.name());
+                }
+                deletion.setUpdated(LocalDateTime.now());
+                return count;
+            });
+            log.debug("Deleted {} {} rows of user {}", deleted, phase, userId);
+        } while (deleted == BATCH_SIZE);
+    }
+}
@@ -0,0 +1,337 @@
+package dev.kuku.youtagserver.shared.application;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kuku.youtagserver.shared.api.events.UpdateVideoInfosOrder;
+import dev.kuku.youtagserver.shared.exceptions.ImportNotFound;
+import dev.kuku.youtagserver.shared.exceptions.InvalidImport;
+import dev.kuku.youtagserver.shared.helper.CacheSpec;
+import dev.kuku.youtagserver.shared.helper.CacheSystem;
+import dev.kuku.youtagserver.shared.models.ImportProgress;
+import dev.kuku.youtagserver.user_tag.api.UserTagService;
+import dev.kuku.youtagserver.user_video.api.UserVideoService;
+import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
+import dev.kuku.youtagserver.video.api.services.VideoService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Imports a library of videos and their tags exported from another tool.
+ * <p>
+ * The upload is spooled to a temporary file and then parsed as a stream on a background thread, so memory use only
+ * depends on the batch size. Every batch of videos is written in its own transaction with one bulk insert per table,
+ * and the videos that are new to the server are queued for scraping with one {@link UpdateVideoInfosOrder}.
+ * Progress is kept for an hour after the last batch.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LibraryImportService {
+    /**
+     * Distinct videos written per transaction
+     */
+    static final int BATCH_SIZE = 500;
+    static final long MAX_UPLOAD_BYTES = 64L * 1024 * 1024;
+    static final int MAX_TAGS_PER_VIDEO = 64;
+    static final int MAX_VIDEO_ID_LENGTH = 50;
+    static final int MAX_TAG_LENGTH = 255;
+    static final Duration PROGRESS_TTL = Duration.ofHours(1);
+    final VideoService videoService;
+    final UserVideoService userVideoService;
+    final UserTagService userTagService;
+    final UserVideoTagService userVideoTagService;
+    final ApplicationEventPublisher eventPublisher;
+    final TransactionTemplate transactionTemplate;
+    final ObjectMapper objectMapper;
+    final CacheSystem cacheSystem;
+    private final Map<String, ImportProgress> runningImportOfUser = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public enum Format {
+        /**
+         * One video per line: videoId,tag1,tag2,... An optional first line starting with videoId is a header.
+         * Blank lines and lines starting with # are ignored. A cell in double quotes can contain commas and "" stands
+         * for a quote in it. Quoted cells can't span lines, and lines with broken quoting are rejected
+         */
+        CSV,
+        /**
+         * Array of {"videoId": "...", "tags": ["...", ...]}
+         */
+        JSON
+    }
+
+    record ImportRow(String videoId, List<String> tags) {
+    }
+
+    private record Imported(int savedVideos, int addedTags, int addedVideoTags, int newVideos) {
+    }
+
+    @PostConstruct
+    void setup() {
+        cacheSystem.configure(ImportProgress.class, CacheSpec.ofSize(10_000).withExpireAfterWrite(PROGRESS_TTL));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Store the upload and start importing it in the background
+     *
+     * @param userId user to import the library to
+     * @param upload the file. Read fully before returning
+     * @param format format of the file
+     * @return progress of the import that was started
+     * @throws InvalidImport if the user already has an import running or the upload is too large
+     */
+    public ImportProgress startImport(String userId, InputStream upload, Format format) throws InvalidImport, IOException {
+        ImportProgress progress = new ImportProgress(UUID.randomUUID().toString(), userId);
+        if (runningImportOfUser.putIfAbsent(userId, progress) != null) {
+            throw new InvalidImport(HttpStatus.CONFLICT, String.format("an import of user %s is already running", userId));
+        }
+        Path file;
+        try {
+            file = spool(upload);
+        } catch (InvalidImport | IOException | RuntimeException e) {
+            runningImportOfUser.remove(userId);
+            throw e;
+        }
+        log.info("Starting import {} of user {} from {} bytes of {}", progress.getId(), userId, Files.size(file), format);
+        cacheSystem.cache(progress.getId(), progress);
+        executor.submit(() -> run(progress, file, format));
+        return progress;
+    }
+
+    /**
+     * @throws ImportNotFound if the import doesn't exist, belongs to another user or finished more than an hour ago
+     */
+    public ImportProgress getProgress(String userId, String importId) throws ImportNotFound {
+        ImportProgress progress = cacheSystem.getObject(importId, ImportProgress.class);
+        if (progress == null || !progress.getUserId().equals(userId)) {
+            throw new ImportNotFound(importId);
+        }
+        return progress;
+    }
+
+    private Path spool(InputStream upload) throws IOException, InvalidImport {
+        Path file = Files.createTempFile("youtag-import", null);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            long total = 0;
+            int read;
+            while ((read = upload.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_UPLOAD_BYTES) {
+                    throw new InvalidImport(HttpStatus.PAYLOAD_TOO_LARGE, String.format("upload is larger than %d bytes", MAX_UPLOAD_BYTES));
+                }
+                out.write(buffer, 0, read);
+            }
+        } catch (InvalidImport | IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    void run(ImportProgress progress, Path file, Format format) {
+        Batch batch = new Batch(progress);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            switch (format) {
+                case CSV -> readCsv(reader, batch);
+                case JSON -> readJson(reader, batch);
+            }
+            batch.flush();
+            progress.completed();
+            log.info("Import {} of user {} completed. {} rows imported, {} rejected", progress.getId(), progress.getUserId(), progress.getRowsImported(), progress.getRowsRejected());
+        } catch (Exception e) {
+            log.error("Import {} of user {} failed after {} rows", progress.getId(), progress.getUserId(), progress.getRowsRead(), e);
+            progress.failed(e.getMessage());
+        } finally {
+            runningImportOfUser.remove(progress.getUserId());
+            cacheSystem.cache(progress.getId(), progress);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete import file {}", file, e);
+            }
+        }
+    }
+
+    private void readCsv(Reader reader, Batch batch) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        boolean first = true;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            List<String> cells;
+            try {
+                cells = splitCsvLine(trimmed);
+            } catch (IllegalArgumentException e) {
+                first = false;
+                batch.reject(e.getMessage());
+                continue;
+            }
+            if (first && cells.getFirst().equalsIgnoreCase("videoId")) {
+                first = false;
+                continue;
+            }
+            first = false;
+            batch.add(new ImportRow(cells.getFirst(), cells.subList(1, cells.size())));
+        }
+    }
+
+    private void readJson(Reader reader, Batch batch) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(reader)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("expected an array of videos");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                batch.add(objectMapper.readValue(parser, ImportRow.class));
+            }
+            if (parser.currentToken() != JsonToken.END_ARRAY) {
+                throw new IOException(String.format("expected a video at row %d", batch.progress.getRowsRead() + 1));
+            }
+        }
+    }
+
+    /**
+     * Split a CSV line into cells following {@link Format#CSV}
+     *
+     * @throws IllegalArgumentException if a quote isn't closed or a cell has a quote outside of its quoted text
+     */
+    private static List<String> splitCsvLine(String line) {
+        List<String> cells = new ArrayList<>();
+        int i = 0;
+        while (true) {
+            while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            StringBuilder cell = new StringBuilder();
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i == line.length()) {
+                        throw new IllegalArgumentException(String.format("quote of cell %d is not closed", cells.size() + 1));
+                    }
+                    char c = line.charAt(i++);
+                    if (c != '"') {
+                        cell.append(c);
+                    } else if (i < line.length() && line.charAt(i) == '"') {
+                        cell.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                    i++;
+                }
+                if (i < line.length() && line.charAt(i) != ',') {
+                    throw new IllegalArgumentException(String.format("text after the closing quote of cell %d", cells.size() + 1));
+                }
+            } else {
+                int end = line.indexOf(',', i);
+                end = end == -1 ? line.length() : end;
+                if (line.substring(i, end).indexOf('"') != -1) {
+                    throw new IllegalArgumentException(String.format("quote inside unquoted cell %d", cells.size() + 1));
+                }
+                cell.append(line, i, end);
+                i = end;
+            }
+            cells.add(cell.toString().strip());
+            if (i == line.length()) {
+                return cells;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * Rows waiting to be written, merged by video
+     */
+    private class Batch {
+        final ImportProgress progress;
+        final Map<String, Set<String>> tagsOfVideo = new LinkedHashMap<>();
+        long rows;
+
+        Batch(ImportProgress progress) {
+            this.progress = progress;
+        }
+
+        void reject(String reason) {
+            progress.rowRead();
+            progress.rowRejected(reason);
+        }
+
+        void add(ImportRow row) {
+            progress.rowRead();
+            String videoId = row.videoId() == null ? "" : row.videoId().strip();
+            List<String> tags = row.tags() == null ? List.of() : row.tags().stream()
+                    .filter(Objects::nonNull)
+                    .map(tag -> tag.strip().toLowerCase())
+                    .filter(tag -> !tag.isEmpty())
+                    .distinct()
+                    .toList();
+            if (videoId.isEmpty() || videoId.length() > MAX_VIDEO_ID_LENGTH) {
+                progress.rowRejected(String.format("video id must have 1 to %d characters", MAX_VIDEO_ID_LENGTH));
+                return;
+            }
+            if (tags.size() > MAX_TAGS_PER_VIDEO) {
+                progress.rowRejected(String.format("more than %d tags", MAX_TAGS_PER_VIDEO));
+                return;
+            }
+            if (tags.stream().anyMatch(tag -> tag.length() > MAX_TAG_LENGTH)) {
+                progress.rowRejected(String.format("tag longer than %d characters", MAX_TAG_LENGTH));
+                return;
+            }
+            tagsOfVideo.computeIfAbsent(videoId, v -> new HashSet<>()).addAll(tags);
+            rows++;
+            if (tagsOfVideo.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (tagsOfVideo.isEmpty()) {
+                return;
+            }
+            String userId = progress.getUserId();
+            Imported imported = transactionTemplate.execute(status -> {
+                List<String> videoIds = List.copyOf(tagsOfVideo.keySet());
+                List<String> newVideos = videoService.addVideos(videoIds);
+                List<String> savedVideos = userVideoService.saveVideosToUser(userId, videoIds);
+                List<String> addedTags = userTagService.addTagsToUser(userId, tagsOfVideo.values().stream().flatMap(Set::stream).distinct().toList());
+                int addedVideoTags = userVideoTagService.addTagsToSavedVideosOfUser(userId, tagsOfVideo).size();
+                if (!newVideos.isEmpty()) {
+                    eventPublisher.publishEvent(new UpdateVideoInfosOrder(newVideos));
+                }
+                return new Imported(savedVideos.size(), addedTags.size(), addedVideoTags, newVideos.size());
+            });
+            progress.batchImported(rows, imported.savedVideos(), imported.addedTags(), imported.addedVideoTags(), imported.newVideos());
+            cacheSystem.cache(progress.getId(), progress);
+            tagsOfVideo.clear();
+            rows = 0;
+        }
+    }
+}
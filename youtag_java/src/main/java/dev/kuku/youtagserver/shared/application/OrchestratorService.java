@@ -9,7 +9,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
 import java.util.Set;
 
 @Service
@@ -26,7 +25,7 @@ public class OrchestratorService {
      * Delete the entry from user_video table
      * Delete tags from user_video_tag tables
      * <p>
-     * Remove redundant tags and Remove redundant video if they are not used anymore
+     * Tags and videos that aren't used anymore are left to {@link OrphanCollector}
      *
      * @param userId   userId
      * @param videoIds videos to delete
@@ -36,21 +35,11 @@ public class OrchestratorService {
         //Remove the saved entry
         userVideoService.deleteSpecificSavedVideosFromUser(userId, videoIds);
         //Remove tag entries of the video and user
-        Set<String> deletedTags = userVideoTagService.deleteAllTagsFromSpecificSavedVideosOfUser(userId, videoIds);
-
-        //Remove redundant tags from user_tag table
-        Set<String> unusedTags = userVideoTagService.getUnusedTagsOfUserFromList(userId, deletedTags);
-        userTagService.deleteSpecifiedTagsOfUser(userId, unusedTags.stream().toList());
-
-        //Remove videos that are not being used by any user
-        Set<String> unusedVideos = userVideoService.getUnusedVideosFromSet(videoIds);
-        videoService.deleteSpecifiedVideos(unusedVideos);
-
+        userVideoTagService.deleteAllTagsFromSpecificSavedVideosOfUser(userId, videoIds);
     }
 
     /**
      * Delete specified tags from specified videos
-     * Delete redundant tags
      *
      * @param userId   userId
      * @param videoIds videoId to delete the tags from
@@ -59,61 +48,45 @@ public class OrchestratorService {
     public void deleteSpecificTagsFromSpecificSavedVideosOfUser(String userId, Set<String> videoIds, Set<String> tags) {
         log.debug("Deleting tags {} from Saved videos {} of user {}", tags, videoIds, userId);
         userVideoTagService.deleteSpecificTagsFromSavedVideosOfUser(userId, videoIds, tags);
-
-        //Remove redundant tags that are not used by the user anymore
-        Set<String> unusedTags = userVideoTagService.getUnusedTagsOfUserFromList(userId, new HashSet<>(tags));
-        userTagService.deleteSpecifiedTagsOfUser(userId, unusedTags.stream().toList());
-
     }
 
     /**
      * Delete specified tags from all videos of user
-     * Delete redundant tags
+     * Delete the tags of user as well, as no video uses them anymore
      *
      * @param userId userId
      * @param tags   tags to delete from all videos
      */
     public void deleteSpecificTagsFromAllSavedVideosOfUser(String userId, Set<String> tags) {
         log.debug("Deleting specific tags {} from all videos of user {}", tags, userId);
-        userVideoTagService.deleteAllTagsFromSpecificSavedVideosOfUser(userId, tags);
-
-        //Remove redundant tags that are not used by the user anymore
-        Set<String> unusedTags = userVideoTagService.getUnusedTagsOfUserFromList(userId, new HashSet<>(tags));
-        userTagService.deleteSpecifiedTagsOfUser(userId, unusedTags.stream().toList());
+        userVideoTagService.deleteSpecificTagsFromAllSavedVideosOfUser(userId, tags);
+        userTagService.deleteSpecifiedTagsOfUser(userId, tags.stream().toList());
     }
 
     /**
      * Delete all tags of specific videos
-     * Delete redundant tags
      *
      * @param userId   userId
      * @param videoIds video Ids to delete the tags from
      */
     public void deleteAllTagsFromSpecificSavedVideosOfUser(String userId, Set<String> videoIds) {
         log.debug("Deleting all tags from saved videos {} of user {}", videoIds, userId);
-        Set<String> deletedTags = userVideoTagService.deleteAllTagsFromSpecificSavedVideosOfUser(userId, videoIds);
-
-        //Remove redundant tags
-        Set<String> unusedTags = userVideoTagService.getUnusedTagsOfUserFromList(userId, deletedTags);
-        userTagService.deleteSpecifiedTagsOfUser(userId, unusedTags.stream().toList());
+        userVideoTagService.deleteAllTagsFromSpecificSavedVideosOfUser(userId, videoIds);
     }
 
     /**
      * Delete the videos from video table
      * Remove all saved videos using this video for all users
      * Remove all tags for users using this videos
-     * Remove redundant tags
+     * <p>
+     * Tags that aren't used anymore are left to {@link OrphanCollector}
      *
      * @param videoIds video Ids to delete
      */
     public void deleteSpecificVideos(Set<String> videoIds) {
         log.debug("Deleting videos {}", videoIds);
         videoService.deleteSpecifiedVideos(videoIds);
-        Set<String> deletedTags = userVideoTagService.deleteAllTagsFromSpecificSavedVideosForAllUser(videoIds);
+        userVideoTagService.deleteAllTagsFromSpecificSavedVideosForAllUser(videoIds);
         userVideoService.deleteSpecificSavedVideosForAllUsers(videoIds.stream().toList());
-
-        //Remove redundant tags
-        Set<String> unusedTags = userVideoTagService.getUnusedTagsForAllUserFromList(deletedTags);
-        userTagService.deleteSpecifiedTagsFromAllUsers(unusedTags);
     }
 }
@@ -0,0 +1,127 @@
+package dev.kuku.youtagserver.shared.application;
+
+import dev.kuku.youtagserver.shared.domain.CollectorCheckpoint;
+import dev.kuku.youtagserver.shared.infrastructure.CollectorCheckpointRepo;
+import dev.kuku.youtagserver.user_tag.api.UserTagDTO;
+import dev.kuku.youtagserver.user_tag.api.UserTagService;
+import dev.kuku.youtagserver.video.api.services.VideoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Removes the tags of users that none of their videos use anymore and the videos that no user has saved.
+ * <p>
+ * Deletes only remove the rows the user asked about and leave the leftovers to this collector. It walks the partial
+ * indexes of user_tag rows with video_count 0 and videos with user_count 0 in key order, one bounded batch per
+ * transaction, and stores where it stopped in
+ * {@link CollectorCheckpoint} so a restart resumes the scan instead of starting over. The checkpoint row is locked for
+ * the batch, so only one instance of the server runs a scan at a time.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class OrphanCollector {
+    static final String USER_TAG_SCAN = "user_tag";
+    static final String VIDEOS_SCAN = "videos";
+    /**
+     * Rows checked per transaction
+     */
+    static final int BATCH_SIZE = 1000;
+    /**
+     * Batches of each scan per run, so a large table is spread over several runs
+     */
+    static final int MAX_BATCHES_PER_RUN = 20;
+    /**
+     * Videos are added before they are saved to a user. Younger videos are left alone so they aren't collected in
+     * between
+     */
+    static final Duration VIDEO_GRACE_PERIOD = Duration.ofMinutes(10);
+    /**
+     * Tags are added to the user before they are put on videos, in a transaction of their own. Tags added more recently
+     * are left alone for the same reason
+     */
+    static final Duration TAG_GRACE_PERIOD = Duration.ofMinutes(10);
+    final CollectorCheckpointRepo checkpointRepo;
+    final UserTagService userTagService;
+    final VideoService videoService;
+    final TransactionTemplate transactionTemplate;
+
+    @Scheduled(initialDelay = 1, fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void collect() {
+        collect(USER_TAG_SCAN, this::collectUnusedTags);
+        collect(VIDEOS_SCAN, this::collectUnsavedVideos);
+    }
+
+    /**
+     * Run batches of a scan until it reaches the end of the table or the batch limit
+     */
+    void collect(String scan, Predicate<CollectorCheckpoint> batch) {
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            Boolean more = transactionTemplate.execute(status -> checkpointRepo.lockByScan(scan)
+                    .map(checkpoint -> {
+                        boolean hasMore = batch.test(checkpoint);
+                        checkpoint.setUpdated(LocalDateTime.now());
+                        checkpointRepo.save(checkpoint);
+                        return hasMore;
+                    })
+                    .orElse(false));
+            if (!Boolean.TRUE.equals(more)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if there are tags after this batch
+     */
+    boolean collectUnusedTags(CollectorCheckpoint checkpoint) {
+        LocalDateTime updatedBefore = LocalDateTime.now().minus(TAG_GRACE_PERIOD);
+        List<UserTagDTO> tags = userTagService.getUnusedTagsOfAllUsersAfter(checkpoint.getAfterKey(), checkpoint.getAfterSubKey(), updatedBefore, BATCH_SIZE);
+        Map<String, Set<String>> unusedTags = tags.stream().collect(Collectors.groupingBy(UserTagDTO::userId, TreeMap::new,
+                Collectors.mapping(UserTagDTO::tag, Collectors.toCollection(TreeSet::new))));
+        userTagService.deleteUnusedTagsOfUsers(unusedTags, updatedBefore);
+        if (!tags.isEmpty()) {
+            log.info("Collected {} unused tags of {} users", tags.size(), unusedTags.size());
+        }
+        if (tags.size() < BATCH_SIZE) {
+            checkpoint.setAfterKey("");
+            checkpoint.setAfterSubKey("");
+            return false;
+        }
+        UserTagDTO last = tags.getLast();
+        checkpoint.setAfterKey(last.userId());
+        checkpoint.setAfterSubKey(last.tag());
+        return true;
+    }
+
+    /**
+     * @return true if there are videos after this batch
+     */
+    boolean collectUnsavedVideos(CollectorCheckpoint checkpoint) {
+        List<String> videoIds = videoService.getUnsavedVideoIdsAfter(checkpoint.getAfterKey(), LocalDateTime.now().minus(VIDEO_GRACE_PERIOD), BATCH_SIZE);
+        Set<String> deletedVideos = videoService.deleteUnsavedVideos(new TreeSet<>(videoIds));
+        if (!deletedVideos.isEmpty()) {
+            log.info("Collected {} unsaved videos", deletedVideos.size());
+        }
+        if (videoIds.size() < BATCH_SIZE) {
+            checkpoint.setAfterKey("");
+            return false;
+        }
+        checkpoint.setAfterKey(videoIds.getLast());
+        return true;
+    }
+}
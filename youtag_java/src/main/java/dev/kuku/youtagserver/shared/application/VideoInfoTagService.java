@@ -0,0 +1,63 @@
+package dev.kuku.youtagserver.shared.application;
+
+import dev.kuku.youtagserver.shared.api.events.RemoveVideosOrder;
+import dev.kuku.youtagserver.shared.models.VideoInfoTagDTO;
+import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
+import dev.kuku.youtagserver.video.api.dto.VideoDTO;
+import dev.kuku.youtagserver.video.api.services.VideoService;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Builds pages of {@link VideoInfoTagDTO} with a fixed number of queries regardless of the page size.
+ */
+@Service
+@Transactional
+@Slf4j
+@RequiredArgsConstructor
+public class VideoInfoTagService {
+    final VideoService videoService;
+    final UserVideoTagService userVideoTagService;
+    final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Get info and tags of saved videos of user.
+     * Video infos come from the video cache with at most one query for the misses and the tags of all videos are
+     * fetched with one query.
+     * Videos that no longer exist are left out and a single {@link RemoveVideosOrder} is published for them.
+     *
+     * @param userId   userId
+     * @param videoIds saved videos of the user
+     * @return video infos with tags in the order of videoIds
+     */
+    public List<VideoInfoTagDTO> getVideoInfoTagsOfUser(String userId, List<String> videoIds) {
+        log.debug("Hydrating videos {} of user {}", videoIds, userId);
+        if (videoIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, VideoDTO> videoInfos = videoService.getVideoInfos(videoIds).stream()
+                .collect(Collectors.toMap(VideoDTO::getId, Function.identity()));
+        Set<String> invalidVideos = videoIds.stream().filter(id -> !videoInfos.containsKey(id)).collect(Collectors.toSet());
+        if (!invalidVideos.isEmpty()) {
+            log.debug("Videos {} not found", invalidVideos);
+            eventPublisher.publishEvent(new RemoveVideosOrder(invalidVideos));
+        }
+
+        Map<String, Set<String>> tags = userVideoTagService.getTagsOfSavedVideosOfUser(userId, videoInfos.keySet());
+        List<VideoInfoTagDTO> videoInfoTagDTOS = new ArrayList<>(videoInfos.size());
+        for (String videoId : videoIds) {
+            VideoDTO videoDTO = videoInfos.get(videoId);
+            if (videoDTO != null) {
+                videoInfoTagDTOS.add(new VideoInfoTagDTO(videoDTO, tags.get(videoId)));
+            }
+        }
+        return videoInfoTagDTOS;
+    }
+}
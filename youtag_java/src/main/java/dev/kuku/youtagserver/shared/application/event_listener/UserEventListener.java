@@ -1,10 +1,7 @@
 package dev.kuku.youtagserver.shared.application.event_listener;
 
+import dev.kuku.youtagserver.shared.application.AccountDeletionService;
 import dev.kuku.youtagserver.user.api.events.UserDeletedEvent;
-import dev.kuku.youtagserver.user_tag.api.UserTagService;
-import dev.kuku.youtagserver.user_video.api.UserVideoService;
-import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
@@ -12,24 +9,20 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.event.TransactionalEventListener;
 
 @Service
-@Transactional
 @Slf4j
 @RequiredArgsConstructor
 public class UserEventListener {
-    final UserVideoService userVideoService;
-    final UserTagService userTagService;
-    final UserVideoTagService userVideoTagService;
+    final AccountDeletionService accountDeletionService;
 
     /**
-     * Delete entries from user_video, user_tag, user_video_tag
+     * Delete entries from user_video_tag, user_video, user_tag in batches with their own transactions.
+     * The event publication is only completed once everything is deleted, so a deletion that is interrupted by a
+     * restart is republished and continues
      */
     @Async
     @TransactionalEventListener
     void on(UserDeletedEvent event) {
         log.debug("User Deleted Event : {}", event);
-        String userId = event.email();
-        userVideoService.deleteAllSavedVideosFromUser(userId);
-        userTagService.deleteAllTagsOfUser(userId);
-        userVideoTagService.deleteAllTagsFromAllVideosOfUser(userId);
+        accountDeletionService.deleteDataOfUser(event.email());
     }
 }
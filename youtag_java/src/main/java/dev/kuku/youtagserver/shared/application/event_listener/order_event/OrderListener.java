@@ -5,7 +5,7 @@ import dev.kuku.youtagserver.shared.api.events.UpdateVideoInfosOrder;
 import dev.kuku.youtagserver.shared.application.OrchestratorService;
 import dev.kuku.youtagserver.video.api.dto.VideoDTO;
 import dev.kuku.youtagserver.video.api.services.VideoService;
-import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfos;
 import dev.kuku.youtagserver.webscraper.api.services.YoutubeScrapperService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -14,14 +14,11 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 @Service
-@Transactional
 @RequiredArgsConstructor
 @Slf4j
 public class OrderListener {
@@ -29,32 +26,38 @@ public class OrderListener {
     final VideoService videoService;
     final YoutubeScrapperService youtubeScrapperService;
     final ApplicationEventPublisher eventPublisher;
+    final TransactionTemplate transactionTemplate;
 
     @Async
     @TransactionalEventListener
+    @Transactional
     void on(RemoveVideosOrder order) {
         log.debug("Remove videos {} event", order);
         orchestratorService.deleteSpecificVideos(order.invalidVideos());
     }
 
+    /**
+     * Fetch the info of the videos concurrently and save it in one batch. Fetching happens outside of a transaction so
+     * no database connection is held while waiting for youtube
+     */
     @Async
     @TransactionalEventListener
     void on(UpdateVideoInfosOrder order) {
         log.debug("Update videoInfos order {}", order.videoIds());
-        Set<String> invalidVideos = new HashSet<>();
-        List<VideoDTO> videoDTOS = new ArrayList<>();
-        for (String id : order.videoIds()) {
-            try {
-                var videoInfo = youtubeScrapperService.getYoutubeVideoInfo(id);
-                videoDTOS.add(new VideoDTO(id, videoInfo.title(), videoInfo.description(), videoInfo.thumbnail()));
-            } catch (InvalidVideoId e) {
+        YoutubeVideoInfos result = youtubeScrapperService.getYoutubeVideoInfos(order.videoIds());
+        List<VideoDTO> videoDTOS = result.videoInfos().stream()
+                .map(videoInfo -> new VideoDTO(videoInfo.videoID(), videoInfo.title(), videoInfo.description(), videoInfo.thumbnail()))
+                .toList();
+        if (!result.unavailableVideoIds().isEmpty()) {
+            //They keep their placeholder info
+            log.warn("Couldn't fetch info of videos {}", result.unavailableVideoIds());
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!result.invalidVideoIds().isEmpty()) {
                 //Failed to get video info. Remove it from video using event publisher
-                invalidVideos.add(id);
+                eventPublisher.publishEvent(new RemoveVideosOrder(result.invalidVideoIds()));
             }
-        }
-        if (!invalidVideos.isEmpty()) {
-            eventPublisher.publishEvent(new RemoveVideosOrder(invalidVideos));
-        }
-        videoService.updateVideos(videoDTOS);
+            videoService.updateVideos(videoDTOS);
+        });
     }
 }
@@ -0,0 +1,54 @@
+package dev.kuku.youtagserver.shared.domain;
+
+import dev.kuku.youtagserver.shared.api.constants.DbConst;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of deleting the data of a deleted user. Updated in the same transaction as every batch that is deleted
+ */
+@Entity
+@Table(name = DbConst.AccountDeletion.TABLE_NAME)
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Getter
+@Setter
+public class AccountDeletion {
+    public enum Phase {VIDEO_TAGS, VIDEOS, TAGS, COMPLETED}
+
+    @Id
+    @Column(name = DbConst.CommonColumn.USER_ID)
+    String userId;
+    @Enumerated(EnumType.STRING)
+    @Column(name = DbConst.AccountDeletion.PHASE, nullable = false)
+    Phase phase;
+    /**
+     * Saved videos and tags of the user when the deletion started
+     */
+    @Column(name = DbConst.AccountDeletion.TOTAL_VIDEOS, nullable = false)
+    long totalVideos;
+    @Column(name = DbConst.AccountDeletion.TOTAL_TAGS, nullable = false)
+    long totalTags;
+    @Column(name = DbConst.AccountDeletion.DELETED_VIDEO_TAGS, nullable = false)
+    long deletedVideoTags;
+    @Column(name = DbConst.AccountDeletion.DELETED_VIDEOS, nullable = false)
+    long deletedVideos;
+    @Column(name = DbConst.AccountDeletion.DELETED_TAGS, nullable = false)
+    long deletedTags;
+    @Column(name = DbConst.AccountDeletion.STARTED, nullable = false)
+    LocalDateTime started;
+    @Column(name = DbConst.CommonColumn.UPDATED, nullable = false)
+    LocalDateTime updated;
+}
@@ -0,0 +1,37 @@
+package dev.kuku.youtagserver.shared.domain;
+
+import dev.kuku.youtagserver.shared.api.constants.DbConst;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where a background scan stopped, so it resumes there after the next tick or a restart.
+ * Empty keys sort before everything and mean the scan starts over
+ */
+@Entity
+@Table(name = DbConst.CollectorCheckpoint.TABLE_NAME)
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Getter
+@Setter
+public class CollectorCheckpoint {
+    @Id
+    @Column(name = DbConst.CollectorCheckpoint.SCAN)
+    String scan;
+    @Column(name = DbConst.CollectorCheckpoint.AFTER_KEY, nullable = false)
+    String afterKey;
+    @Column(name = DbConst.CollectorCheckpoint.AFTER_SUB_KEY, nullable = false)
+    String afterSubKey;
+    @Column(name = DbConst.CommonColumn.UPDATED, nullable = false)
+    LocalDateTime updated;
+}
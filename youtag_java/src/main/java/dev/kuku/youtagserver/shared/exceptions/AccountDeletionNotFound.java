@@ -0,0 +1,9 @@
+package dev.kuku.youtagserver.shared.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+public class AccountDeletionNotFound extends ResponseException {
+    public AccountDeletionNotFound(String userId) {
+        super(HttpStatus.NOT_FOUND, String.format("No account deletion of %s", userId));
+    }
+}
@@ -0,0 +1,9 @@
+package dev.kuku.youtagserver.shared.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+public class ImportNotFound extends ResponseException {
+    public ImportNotFound(String importId) {
+        super(HttpStatus.NOT_FOUND, String.format("Import %s not found", importId));
+    }
+}
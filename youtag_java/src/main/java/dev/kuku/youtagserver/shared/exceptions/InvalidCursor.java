@@ -0,0 +1,9 @@
+package dev.kuku.youtagserver.shared.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+public class InvalidCursor extends ResponseException {
+    public InvalidCursor(String cursor) {
+        super(HttpStatus.BAD_REQUEST, String.format("Invalid cursor %s", cursor));
+    }
+}
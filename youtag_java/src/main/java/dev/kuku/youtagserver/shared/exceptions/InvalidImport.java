@@ -0,0 +1,9 @@
+package dev.kuku.youtagserver.shared.exceptions;
+
+import org.springframework.http.HttpStatus;
+
+public class InvalidImport extends ResponseException {
+    public InvalidImport(HttpStatus status, String reason) {
+        super(status, String.format("Invalid import: %s", reason));
+    }
+}
@@ -0,0 +1,496 @@
+package dev.kuku.youtagserver.shared.helper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded concurrent cache using the W-TinyLFU policy.
+ * <p>
+ * New entries land in a small LRU admission window (1% of the capacity). When the window overflows its oldest entry
+ * competes with the oldest entry of the main segmented LRU and the one with the higher estimated frequency
+ * (see {@link FrequencySketch}) stays. The main space is split into probation and protected segments so that one-hit
+ * wonders can't flush frequently used entries.
+ * <p>
+ * Reads are lock free. A hit only records the node into a lossy striped ring buffer which is replayed against the
+ * policy by whichever thread manages to grab the eviction lock, so nothing is allocated on the hit path.
+ * Writes are serialized by the eviction lock.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public final class BoundedCache<K, V> {
+    /**
+     * Computes how much of the capacity an entry takes up.
+     */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        int weigh(K key, V value);
+    }
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+    private static final int RETIRED = 3;
+
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+    private static final int BUFFER_SIZE = 16;
+    private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final ReadBuffer[] readBuffers;
+    private final int readBufferMask;
+
+    private final Weigher<K, V> weigher;
+    private final LongSupplier ticker;
+    private final long expireAfterWriteNanos;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    // Policy state. Guarded by evictionLock
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedSegment = new AccessOrderDeque<>();
+    private long weightedSize;
+    private long windowWeight;
+    private long protectedWeight;
+
+    /**
+     * @param maximumWeight         maximum total weight of the entries
+     * @param expireAfterWriteNanos default time to live of an entry. 0 or less disables expiry
+     * @param weigher               weight of an entry. null means every entry weighs 1
+     */
+    public BoundedCache(long maximumWeight, long expireAfterWriteNanos, Weigher<K, V> weigher) {
+        this(maximumWeight, expireAfterWriteNanos, weigher, System::nanoTime);
+    }
+
+    BoundedCache(long maximumWeight, long expireAfterWriteNanos, Weigher<K, V> weigher, LongSupplier ticker) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
+        this.maximumWeight = maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight / 100);
+        this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * 0.8);
+        this.expireAfterWriteNanos = expireAfterWriteNanos > 0 ? expireAfterWriteNanos : 0;
+        this.weigher = weigher;
+        this.ticker = ticker;
+        // Weighted caches can't tell how many entries they will hold, so their sketch grows with the entry count
+        this.sketch = new FrequencySketch(weigher == null ? maximumWeight : 0);
+
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        this.readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+        this.readBufferMask = stripes - 1;
+    }
+
+    /**
+     * Returns the value mapped to the key or null if it is absent or expired.
+     */
+    public V get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (node.expiresAt != NO_EXPIRY && ticker.getAsLong() - node.expiresAt >= 0) {
+            remove(key, node);
+            return null;
+        }
+        V value = node.value;
+        afterRead(node);
+        return value;
+    }
+
+    /**
+     * Maps the key to the value using the default time to live.
+     */
+    public void put(K key, V value) {
+        put(key, value, expireAfterWriteNanos);
+    }
+
+    /**
+     * Maps the key to the value with a custom time to live. 0 or less means the entry never expires.
+     */
+    public void put(K key, V value, long timeToLiveNanos) {
+        if (key == null || value == null) {
+            throw new NullPointerException("key and value can't be null");
+        }
+        int weight = weigher == null ? 1 : weigher.weigh(key, value);
+        long expiresAt = timeToLiveNanos > 0 ? ticker.getAsLong() + timeToLiveNanos : NO_EXPIRY;
+
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            Node<K, V> existing = data.get(key);
+            if (existing != null) {
+                existing.value = value;
+                existing.expiresAt = expiresAt;
+                adjustWeight(existing, weight);
+                onAccess(existing);
+            } else {
+                Node<K, V> node = new Node<>(key, value, weight, expiresAt);
+                data.put(key, node);
+                if (weigher != null) {
+                    sketch.ensureCapacity(data.size());
+                }
+                sketch.increment(key.hashCode());
+                node.queue = WINDOW;
+                window.addLast(node);
+                windowWeight += weight;
+                weightedSize += weight;
+            }
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the value of the key only if it is still mapped to expectedValue.
+     *
+     * @return true if the value was replaced
+     */
+    public boolean replace(K key, V expectedValue, V newValue, long timeToLiveNanos) {
+        int weight = weigher == null ? 1 : weigher.weigh(key, newValue);
+        long expiresAt = timeToLiveNanos > 0 ? ticker.getAsLong() + timeToLiveNanos : NO_EXPIRY;
+
+        evictionLock.lock();
+        try {
+            Node<K, V> existing = data.get(key);
+            if (existing == null || existing.value != expectedValue) {
+                return false;
+            }
+            existing.value = newValue;
+            existing.expiresAt = expiresAt;
+            adjustWeight(existing, weight);
+            evict();
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the key from the cache.
+     */
+    public void invalidate(K key) {
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            remove(key, node);
+        }
+    }
+
+    /**
+     * Removes every entry from the cache.
+     */
+    public void invalidateAll() {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            for (K key : data.keySet()) {
+                Node<K, V> node = data.remove(key);
+                if (node != null) {
+                    retire(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Number of entries currently held, including expired entries that were not yet cleaned up.
+     */
+    public long estimatedSize() {
+        return data.size();
+    }
+
+    /**
+     * Total weight of the entries currently held.
+     */
+    public long weightedSize() {
+        evictionLock.lock();
+        try {
+            return weightedSize;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void remove(K key, Node<K, V> node) {
+        evictionLock.lock();
+        try {
+            if (data.remove(key, node)) {
+                retire(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void afterRead(Node<K, V> node) {
+        int stripe = (int) Thread.currentThread().threadId() & readBufferMask;
+        ReadBuffer buffer = readBuffers[stripe];
+        int pending = buffer.offer(node);
+        if (pending >= DRAIN_THRESHOLD && evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            Object node;
+            while ((node = buffer.poll()) != null) {
+                Node<K, V> accessed = (Node<K, V>) node;
+                if (accessed.queue != RETIRED) {
+                    onAccess(accessed);
+                }
+            }
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        sketch.increment(node.key.hashCode());
+        switch (node.queue) {
+            case WINDOW -> window.moveToBack(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protectedSegment.addLast(node);
+                protectedWeight += node.weight;
+                demoteFromProtected();
+            }
+            case PROTECTED -> protectedSegment.moveToBack(node);
+            default -> {
+            }
+        }
+    }
+
+    private void adjustWeight(Node<K, V> node, int weight) {
+        int delta = weight - node.weight;
+        node.weight = weight;
+        weightedSize += delta;
+        if (node.queue == WINDOW) {
+            windowWeight += delta;
+        } else if (node.queue == PROTECTED) {
+            protectedWeight += delta;
+        }
+    }
+
+    private void demoteFromProtected() {
+        while (protectedWeight > protectedMaximum) {
+            Node<K, V> demoted = protectedSegment.pollFirst();
+            if (demoted == null) {
+                return;
+            }
+            protectedWeight -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    /**
+     * Moves overflowing window entries into probation where they compete with the probation victim.
+     */
+    private void evict() {
+        while (windowWeight > windowMaximum) {
+            Node<K, V> candidate = window.pollFirst();
+            if (candidate == null) {
+                break;
+            }
+            windowWeight -= candidate.weight;
+            candidate.queue = PROBATION;
+            probation.addLast(candidate);
+
+            if (weightedSize <= maximumWeight) {
+                continue;
+            }
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == candidate) {
+                victim = protectedSegment.peekFirst();
+            }
+            if (victim == null || admit(candidate, victim)) {
+                evictEntry(victim != null ? victim : candidate);
+            } else {
+                evictEntry(candidate);
+            }
+        }
+        // Heavy entries may still push the cache over its limit
+        while (weightedSize > maximumWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            if (victim == null) {
+                victim = protectedSegment.peekFirst();
+            }
+            if (victim == null) {
+                victim = window.peekFirst();
+            }
+            if (victim == null) {
+                return;
+            }
+            evictEntry(victim);
+        }
+    }
+
+    /**
+     * TinyLFU admission. Expired victims always lose, otherwise the more frequent key wins.
+     */
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+        if (victim.expiresAt != NO_EXPIRY && ticker.getAsLong() - victim.expiresAt >= 0) {
+            return true;
+        }
+        return sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode());
+    }
+
+    private void evictEntry(Node<K, V> node) {
+        if (data.remove(node.key, node)) {
+            retire(node);
+        }
+    }
+
+    private void retire(Node<K, V> node) {
+        switch (node.queue) {
+            case WINDOW -> {
+                window.remove(node);
+                windowWeight -= node.weight;
+            }
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> {
+                protectedSegment.remove(node);
+                protectedWeight -= node.weight;
+            }
+            default -> {
+                return;
+            }
+        }
+        weightedSize -= node.weight;
+        node.queue = RETIRED;
+    }
+
+    static final class Node<K, V> {
+        final K key;
+        volatile V value;
+        volatile long expiresAt;
+        int weight;
+        int queue = RETIRED;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value, int weight, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Intrusive doubly linked list ordered from least to most recently used.
+     */
+    static final class AccessOrderDeque<K, V> {
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        Node<K, V> peekFirst() {
+            return first;
+        }
+
+        Node<K, V> pollFirst() {
+            Node<K, V> node = first;
+            if (node != null) {
+                remove(node);
+            }
+            return node;
+        }
+
+        void addLast(Node<K, V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void moveToBack(Node<K, V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+        }
+    }
+
+    /**
+     * Lossy single consumer ring buffer. Offers are dropped when the buffer is full which is fine because the policy
+     * only needs a sample of the accesses.
+     */
+    static final class ReadBuffer {
+        private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter;
+
+        /**
+         * @return number of pending entries after the offer
+         */
+        int offer(Object node) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            long size = tail - head;
+            if (size >= BUFFER_SIZE) {
+                return BUFFER_SIZE;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                slots.lazySet((int) (tail & BUFFER_MASK), node);
+                return (int) size + 1;
+            }
+            return 0;
+        }
+
+        /**
+         * Must only be called while holding the eviction lock.
+         */
+        Object poll() {
+            long head = readCounter;
+            if (head == writeCounter.get()) {
+                return null;
+            }
+            int index = (int) (head & BUFFER_MASK);
+            Object node = slots.get(index);
+            if (node == null) {
+                // Producer claimed the slot but has not published it yet
+                return null;
+            }
+            slots.lazySet(index, null);
+            readCounter = head + 1;
+            return node;
+        }
+    }
+}
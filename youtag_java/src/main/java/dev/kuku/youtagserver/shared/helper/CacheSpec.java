@@ -0,0 +1,30 @@
+package dev.kuku.youtagserver.shared.helper;
+
+import java.time.Duration;
+
+/**
+ * Limits of a cache namespace.
+ *
+ * @param maximumWeight    maximum total weight of the namespace. Every entry weighs 1 unless a weigher is given
+ * @param expireAfterWrite default time to live of an entry. null means entries only leave through eviction
+ * @param weigher          weight of an entry. null means every entry weighs 1
+ */
+public record CacheSpec(long maximumWeight, Duration expireAfterWrite, BoundedCache.Weigher<String, Object> weigher) {
+    public static final CacheSpec DEFAULT = new CacheSpec(10_000, null, null);
+
+    public static CacheSpec ofSize(long maximumSize) {
+        return new CacheSpec(maximumSize, null, null);
+    }
+
+    public CacheSpec withExpireAfterWrite(Duration expireAfterWrite) {
+        return new CacheSpec(maximumWeight, expireAfterWrite, weigher);
+    }
+
+    public CacheSpec withWeigher(BoundedCache.Weigher<String, Object> weigher) {
+        return new CacheSpec(maximumWeight, expireAfterWrite, weigher);
+    }
+
+    long expireAfterWriteNanos() {
+        return expireAfterWrite == null ? 0 : expireAfterWrite.toNanos();
+    }
+}
@@ -1,54 +1,90 @@
 package dev.kuku.youtagserver.shared.helper;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Application wide cache. Every class of cached object gets its own bounded namespace backed by a W-TinyLFU
+ * {@link BoundedCache}. Namespaces use {@link CacheSpec#DEFAULT} unless {@link #configure(Class, CacheSpec)} is called
+ * before the first object of that class is cached.
+ * <p>
+ * Services that own a table should prefer {@link #managed} which gives a read-through namespace with per entry time
+ * to live and refresh-ahead.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class CacheSystem {
-    //TODO Cache system with limit
-    private final ConcurrentHashMap<String, Map<String, Object>> cacheStore = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, BoundedCache<String, Object>> cacheStore = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ManagedCache<?>> managedStore = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Create the read-through namespace of objClass.
+     *
+     * @param objClass class of the cached values. Used as namespace name
+     * @param spec     size limits of the namespace
+     * @param loader   loads a value from the source of truth on miss and on refresh
+     * @param expiry   time to live of an entry
+     */
+    public <T> ManagedCache<T> managed(Class<T> objClass, CacheSpec spec, ManagedCache.Loader<T> loader, ManagedCache.Expiry<T> expiry) {
+        log.debug("Creating managed cache {} with {}", objClass.getName(), spec);
+        var cache = new ManagedCache<>(objClass.getName(), spec, loader, expiry, refreshExecutor, System::nanoTime);
+        if (managedStore.putIfAbsent(objClass.getName(), cache) != null) {
+            throw new IllegalStateException("Managed cache " + objClass.getName() + " already exists");
+        }
+        return cache;
+    }
+
+    /**
+     * Set the limits of the namespace used by objClass. Replaces the existing namespace and its entries.
+     */
+    public void configure(Class<?> objClass, CacheSpec spec) {
+        log.debug("Configuring cache store {} with {}", objClass.getName(), spec);
+        cacheStore.put(objClass.getName(), new BoundedCache<>(spec.maximumWeight(), spec.expireAfterWriteNanos(), spec.weigher()));
+    }
 
     public void cache(String uniqueKey, Object objectToCache) {
         if (objectToCache == null) {
             log.warn("Skipping caching as objectToCache is null");
             return;
         }
-        log.info("caching key {}  in {} to store: {}", uniqueKey, objectToCache.getClass().getName(), objectToCache);
+        log.debug("Caching key {} in store {}", uniqueKey, objectToCache.getClass().getName());
         getStore(objectToCache.getClass().getName()).put(uniqueKey, objectToCache);
     }
 
     public <T> T getObject(String uniqueKey, Class<T> objClass) {
-        T obj = (T) getStore(objClass.getName()).get(uniqueKey);
-        if (obj == null) {
-            log.info("Failed to find obj in cache: {}", uniqueKey);
-        } else {
-            log.info("Found obj in cache: {}", uniqueKey);
-        }
-        return obj;
+        return objClass.cast(getStore(objClass.getName()).get(uniqueKey));
     }
 
     public void evict(String uniqueKey, Class<?> objClass) {
-        log.info("Removing key {} from store {}", uniqueKey, objClass.getName());
-        if (cacheStore.containsKey(objClass.getName())) {
-            cacheStore.get(objClass.getName()).remove(uniqueKey);
-            //If cacheStore is empty then remove the store
-            if (cacheStore.get(objClass.getName()).isEmpty()) {
-                cacheStore.remove(objClass.getName());
-            }
+        log.debug("Removing key {} from store {}", uniqueKey, objClass.getName());
+        var store = cacheStore.get(objClass.getName());
+        if (store != null) {
+            store.invalidate(uniqueKey);
+        }
+        var managed = managedStore.get(objClass.getName());
+        if (managed != null) {
+            managed.invalidate(uniqueKey);
         }
     }
 
-    private Map<String, Object> getStore(String name) {
-        if (!cacheStore.containsKey(name)) {
-            cacheStore.put(name, new HashMap<>());
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private BoundedCache<String, Object> getStore(String name) {
+        var store = cacheStore.get(name);
+        if (store == null) {
+            store = cacheStore.computeIfAbsent(name, s -> new BoundedCache<>(CacheSpec.DEFAULT.maximumWeight(), CacheSpec.DEFAULT.expireAfterWriteNanos(), null));
         }
-        return cacheStore.get(name);
+        return store;
     }
 }
@@ -0,0 +1,109 @@
+package dev.kuku.youtagserver.shared.helper;
+
+/**
+ * 4-bit Count-Min sketch used by {@link BoundedCache} to estimate how often a key was accessed.
+ * Counters are halved once the sample period is reached so that old popularity fades away (TinyLFU aging).
+ * <p>
+ * Not thread safe. It is only touched while the owning cache holds its eviction lock.
+ */
+final class FrequencySketch {
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    FrequencySketch(long maximumSize) {
+        resize(maximumSize);
+    }
+
+    /**
+     * Grows the sketch so it can track maximumSize keys. Growing clears the recorded history.
+     */
+    void ensureCapacity(long maximumSize) {
+        if (maximumSize > table.length && table.length < (1 << 30)) {
+            resize(maximumSize);
+        }
+    }
+
+    private void resize(long maximumSize) {
+        int capacity = (int) Math.min(Math.max(maximumSize, 16), 1 << 30);
+        int length = Integer.highestOneBit(capacity - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+        this.size = 0;
+    }
+
+    /**
+     * Estimated number of times the hash was seen, capped at 15.
+     */
+    int frequency(int hash) {
+        int spread = spread(hash);
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(spread, i);
+            int offset = offsetOf(spread, i);
+            int count = (int) ((table[index] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Increments the popularity of the hash if it is not already at the maximum.
+     */
+    void increment(int hash) {
+        int spread = spread(hash);
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(spread, i), offsetOf(spread, i));
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int offset) {
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halves every counter so that history decays.
+     */
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int spread, int depth) {
+        long hash = (spread + SEEDS[depth]) * SEEDS[depth];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    private static int offsetOf(int spread, int depth) {
+        // Each long holds 16 counters; the depth picks one of four counter groups
+        return (((spread >>> (depth << 3)) & 3) << 2) + (depth << 4);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
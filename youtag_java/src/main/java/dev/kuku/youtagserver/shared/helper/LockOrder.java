@@ -0,0 +1,54 @@
+package dev.kuku.youtagserver.shared.helper;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Order of the rows of batch writes.
+ * <p>
+ * A statement that writes many rows locks them one at a time, in the order of its input. Two batches that write some
+ * of the same rows in opposite orders can each hold a lock the other one waits for, and deadlock. So every batch
+ * write sorts its keys here, and the repositories take the rows in the order they are given.
+ */
+public final class LockOrder {
+    /**
+     * Order of rows keyed by two columns
+     */
+    public static final Comparator<Map.Entry<String, String>> PAIRS = Map.Entry.<String, String>comparingByKey().thenComparing(Map.Entry.comparingByValue());
+
+    private LockOrder() {
+    }
+
+    /**
+     * @return distinct keys in lock order
+     */
+    public static String[] keys(Collection<String> keys) {
+        return keys.stream().distinct().sorted().toArray(String[]::new);
+    }
+
+    /**
+     * @return rows in the lock order of their keys
+     */
+    public static <T> List<T> byKey(Collection<T> rows, Function<T, String> key) {
+        return rows.stream().sorted(Comparator.comparing(key)).toList();
+    }
+
+    /**
+     * @return values in the lock order of their keys
+     */
+    public static <V> SortedMap<String, V> byKey(Map<String, V> values) {
+        return new TreeMap<>(values);
+    }
+
+    /**
+     * @return empty map that keeps the values of rows keyed by two columns in lock order
+     */
+    public static <V> SortedMap<Map.Entry<String, String>, V> byPair() {
+        return new TreeMap<>(PAIRS);
+    }
+}
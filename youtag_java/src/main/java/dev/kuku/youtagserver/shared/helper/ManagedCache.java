@@ -0,0 +1,288 @@
+package dev.kuku.youtagserver.shared.helper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache namespace created by {@link CacheSystem#managed}.
+ * <p>
+ * Every entry gets its own time to live from {@link Expiry}. Entries that are read after {@link #REFRESH_AHEAD_FACTOR}
+ * of their time to live has passed are reloaded in the background while the old value keeps being served, so hot keys
+ * never expire under readers. Keys the loader couldn't find are remembered for {@link #NEGATIVE_TIME_TO_LIVE} so repeated
+ * lookups of missing rows don't reach the database. Invalidations done inside a transaction are repeated once it completes so that a reader
+ * can't put back a row that was read before the transaction committed.
+ *
+ * @param <T> type of the cached value
+ */
+@Slf4j
+public final class ManagedCache<T> {
+    /**
+     * Portion of the time to live after which a read triggers a background refresh.
+     */
+    static final double REFRESH_AHEAD_FACTOR = 0.8;
+    /**
+     * How long a key that the loader couldn't find is remembered as missing.
+     */
+    static final Duration NEGATIVE_TIME_TO_LIVE = Duration.ofSeconds(30);
+    private static final long NO_REFRESH = Long.MAX_VALUE;
+
+    /**
+     * Loads the value of a key from the source of truth.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        /**
+         * @return value of the key or null if it doesn't exist
+         */
+        T load(String key);
+
+        /**
+         * Load several keys at once. Defaults to loading them one by one.
+         *
+         * @return found values mapped by key. Missing keys are left out
+         */
+        default Map<String, T> loadAll(Collection<String> keys) {
+            Map<String, T> found = new HashMap<>();
+            for (String key : keys) {
+                T value = load(key);
+                if (value != null) {
+                    found.put(key, value);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Loader that uses a single query for bulk loads.
+         */
+        static <T> Loader<T> of(Loader<T> single, Function<Collection<String>, Map<String, T>> bulk) {
+            return new Loader<>() {
+                @Override
+                public T load(String key) {
+                    return single.load(key);
+                }
+
+                @Override
+                public Map<String, T> loadAll(Collection<String> keys) {
+                    return bulk.apply(keys);
+                }
+            };
+        }
+    }
+
+    /**
+     * Decides how long an entry stays in the cache.
+     */
+    @FunctionalInterface
+    public interface Expiry<T> {
+        Duration timeToLive(T value);
+
+        /**
+         * Heuristic freshness based on the last modification time, the same way HTTP caches treat Last-Modified:
+         * a value stays cached for 10% of its age, bounded by min and max. Rows that changed recently are likely to
+         * change again so they are re-read sooner.
+         */
+        static <T> Expiry<T> fromLastModified(Function<T, LocalDateTime> lastModified, Duration min, Duration max) {
+            return value -> {
+                LocalDateTime modified = lastModified.apply(value);
+                if (modified == null) {
+                    return min;
+                }
+                Duration tenthOfAge = Duration.between(modified, LocalDateTime.now()).dividedBy(10);
+                if (tenthOfAge.compareTo(min) < 0) {
+                    return min;
+                }
+                return tenthOfAge.compareTo(max) > 0 ? max : tenthOfAge;
+            };
+        }
+    }
+
+    private final String name;
+    private final BoundedCache<String, Entry<T>> cache;
+    private final Loader<T> loader;
+    private final Expiry<T> expiry;
+    private final Executor refreshExecutor;
+    private final LongSupplier ticker;
+    private final long defaultTimeToLiveNanos;
+
+    ManagedCache(String name, CacheSpec spec, Loader<T> loader, Expiry<T> expiry, Executor refreshExecutor, LongSupplier ticker) {
+        this.name = name;
+        this.cache = new BoundedCache<>(spec.maximumWeight(), spec.expireAfterWriteNanos(), null, ticker);
+        this.loader = loader;
+        this.expiry = expiry;
+        this.refreshExecutor = refreshExecutor;
+        this.ticker = ticker;
+        this.defaultTimeToLiveNanos = spec.expireAfterWriteNanos();
+    }
+
+    /**
+     * Get the value from the cache, loading it if it is absent.
+     *
+     * @return the value or null if the loader didn't find it
+     */
+    public T get(String key) {
+        Entry<T> entry = cache.get(key);
+        if (entry != null) {
+            refreshIfDue(key, entry);
+            return entry.value;
+        }
+        T value = loader.load(key);
+        if (value != null) {
+            put(key, value);
+        } else {
+            putMissing(key);
+        }
+        return value;
+    }
+
+    /**
+     * Get the values of several keys. Cached keys are served from memory and all misses are loaded with a single
+     * {@link Loader#loadAll} call.
+     *
+     * @return found values in the order of keys. Missing keys are left out
+     */
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new HashMap<>();
+        Set<String> misses = new LinkedHashSet<>();
+        for (String key : keys) {
+            Entry<T> entry = cache.get(key);
+            if (entry == null) {
+                misses.add(key);
+                continue;
+            }
+            refreshIfDue(key, entry);
+            if (entry.value != null) {
+                found.put(key, entry.value);
+            }
+        }
+        if (!misses.isEmpty()) {
+            log.debug("Loading {} of {} keys of cache {}", misses.size(), keys.size(), name);
+            Map<String, T> loaded = loader.loadAll(misses);
+            for (String key : misses) {
+                T value = loaded.get(key);
+                if (value != null) {
+                    put(key, value);
+                    found.put(key, value);
+                } else {
+                    putMissing(key);
+                }
+            }
+        }
+        Map<String, T> ordered = new LinkedHashMap<>();
+        for (String key : keys) {
+            T value = found.get(key);
+            if (value != null) {
+                ordered.put(key, value);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Get the value only if it is already cached.
+     */
+    public T getIfPresent(String key) {
+        Entry<T> entry = cache.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    public void put(String key, T value) {
+        long ttl = timeToLiveNanos(value);
+        cache.put(key, newEntry(value, ttl), ttl);
+    }
+
+    public void invalidate(String key) {
+        invalidateAll(List.of(key));
+    }
+
+    /**
+     * Remove the keys now and once more after the current transaction completes.
+     */
+    public void invalidateAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        log.debug("Invalidating {} keys of cache {}", keys.size(), name);
+        keys.forEach(cache::invalidate);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<String> pending = List.copyOf(keys);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    pending.forEach(cache::invalidate);
+                }
+            });
+        }
+    }
+
+    private void putMissing(String key) {
+        cache.put(key, new Entry<>(null, NO_REFRESH), NEGATIVE_TIME_TO_LIVE.toNanos());
+    }
+
+    private void refreshIfDue(String key, Entry<T> entry) {
+        if (entry.refreshAt != NO_REFRESH && ticker.getAsLong() - entry.refreshAt >= 0 && entry.refreshing.compareAndSet(false, true)) {
+            scheduleRefresh(key, entry);
+        }
+    }
+
+    private void scheduleRefresh(String key, Entry<T> entry) {
+        try {
+            refreshExecutor.execute(() -> refresh(key, entry));
+        } catch (RuntimeException e) {
+            log.warn("Failed to schedule refresh of {} in cache {}: {}", key, name, e.getMessage());
+            entry.refreshing.set(false);
+        }
+    }
+
+    private void refresh(String key, Entry<T> entry) {
+        try {
+            T value = loader.load(key);
+            if (value == null) {
+                cache.invalidate(key);
+                return;
+            }
+            long ttl = timeToLiveNanos(value);
+            // Skip if the key was invalidated or rewritten while we were loading
+            cache.replace(key, entry, newEntry(value, ttl), ttl);
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh {} in cache {}: {}", key, name, e.getMessage());
+            entry.refreshing.set(false);
+        }
+    }
+
+    private long timeToLiveNanos(T value) {
+        Duration ttl = expiry == null ? null : expiry.timeToLive(value);
+        return ttl == null ? defaultTimeToLiveNanos : ttl.toNanos();
+    }
+
+    private Entry<T> newEntry(T value, long ttl) {
+        long refreshAt = ttl > 0 ? ticker.getAsLong() + (long) (ttl * REFRESH_AHEAD_FACTOR) : NO_REFRESH;
+        return new Entry<>(value, refreshAt);
+    }
+
+    private static final class Entry<T> {
+        final T value;
+        final long refreshAt;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Entry(T value, long refreshAt) {
+            this.value = value;
+            this.refreshAt = refreshAt;
+        }
+    }
+}
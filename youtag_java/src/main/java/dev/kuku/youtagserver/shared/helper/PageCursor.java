@@ -0,0 +1,52 @@
+package dev.kuku.youtagserver.shared.helper;
+
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the sort key of the last row of a page into an opaque cursor and back.
+ * The cursor is the url safe base64 of the key parts joined by a unit separator.
+ */
+public final class PageCursor {
+    /**
+     * Response header carrying the cursor of the next page
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String SEPARATOR = "\u001f";
+
+    private PageCursor() {
+    }
+
+    public static String encode(String... keyParts) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join(SEPARATOR, keyParts).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor        cursor created by {@link #encode}
+     * @param expectedParts how many key parts the cursor must have
+     * @return key parts of the cursor
+     * @throws InvalidCursor if the cursor is malformed
+     */
+    public static String[] decode(String cursor, int expectedParts) throws InvalidCursor {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, -1);
+            if (parts.length != expectedParts) {
+                throw new InvalidCursor(cursor);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursor(cursor);
+        }
+    }
+
+    /**
+     * true if the cursor asks for the first page
+     */
+    public static boolean isFirstPage(String cursor) {
+        return cursor == null || cursor.isBlank();
+    }
+}
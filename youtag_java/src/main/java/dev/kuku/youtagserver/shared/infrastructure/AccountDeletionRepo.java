@@ -0,0 +1,7 @@
+package dev.kuku.youtagserver.shared.infrastructure;
+
+import dev.kuku.youtagserver.shared.domain.AccountDeletion;
+import org.springframework.data.repository.CrudRepository;
+
+public interface AccountDeletionRepo extends CrudRepository<AccountDeletion, String> {
+}
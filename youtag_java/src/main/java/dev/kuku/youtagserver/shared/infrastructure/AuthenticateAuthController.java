@@ -2,6 +2,9 @@ package dev.kuku.youtagserver.shared.infrastructure;
 
 import dev.kuku.youtagserver.auth.api.exceptions.NoAuthenticatedYouTagUser;
 import dev.kuku.youtagserver.auth.api.services.AuthService;
+import dev.kuku.youtagserver.shared.application.AccountDeletionService;
+import dev.kuku.youtagserver.shared.exceptions.AccountDeletionNotFound;
+import dev.kuku.youtagserver.shared.models.AccountDeletionProgress;
 import dev.kuku.youtagserver.shared.models.ResponseModel;
 import dev.kuku.youtagserver.user.api.dto.UserDTO;
 import dev.kuku.youtagserver.user.api.exceptions.EmailNotFound;
@@ -25,6 +28,8 @@ public class AuthenticateAuthController {
 
     private final AuthService authService;
 
+    private final AccountDeletionService accountDeletionService;
+
 
     @GetMapping("/user")
     ResponseEntity<ResponseModel<UserDTO>> getUserInfo() throws UserDTOHasNullValues, EmailNotFound, NoAuthenticatedYouTagUser {
@@ -45,4 +50,13 @@ public class AuthenticateAuthController {
         userService.deleteUser(userId);
         return ResponseEntity.ok(null);
     }
+
+    /**
+     * Progress of deleting the saved videos and tags of the current user after the user was deleted
+     */
+    @GetMapping("/user/deletion")
+    ResponseEntity<ResponseModel<AccountDeletionProgress>> getUserDeletionProgress() throws NoAuthenticatedYouTagUser, AccountDeletionNotFound {
+        String userId = authService.getCurrentUser().email();
+        return ResponseEntity.ok(ResponseModel.build(accountDeletionService.getProgress(userId), null));
+    }
 }
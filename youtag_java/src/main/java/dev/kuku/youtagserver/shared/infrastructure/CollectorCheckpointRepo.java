@@ -0,0 +1,18 @@
+package dev.kuku.youtagserver.shared.infrastructure;
+
+import dev.kuku.youtagserver.shared.domain.CollectorCheckpoint;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface CollectorCheckpointRepo extends CrudRepository<CollectorCheckpoint, String> {
+    /**
+     * Lock the checkpoint of the scan until the transaction ends
+     *
+     * @return empty if another instance is running the scan right now
+     */
+    @Query(nativeQuery = true, value = "SELECT * FROM collector_checkpoint WHERE scan = :scan FOR UPDATE SKIP LOCKED")
+    Optional<CollectorCheckpoint> lockByScan(@Param("scan") String scan);
+}
@@ -0,0 +1,53 @@
+package dev.kuku.youtagserver.shared.infrastructure;
+
+import dev.kuku.youtagserver.auth.api.exceptions.NoAuthenticatedYouTagUser;
+import dev.kuku.youtagserver.auth.api.services.AuthService;
+import dev.kuku.youtagserver.shared.application.LibraryImportService;
+import dev.kuku.youtagserver.shared.exceptions.ImportNotFound;
+import dev.kuku.youtagserver.shared.exceptions.InvalidImport;
+import dev.kuku.youtagserver.shared.models.ImportProgress;
+import dev.kuku.youtagserver.shared.models.ResponseModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * - Import videos and their tags in bulk (to user)
+ * - Get progress of an import (of user)
+ */
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/api/authenticated/import")
+public class ImportController {
+    static final String TEXT_CSV_VALUE = "text/csv";
+    final AuthService authService;
+    final LibraryImportService libraryImportService;
+
+    String getCurrentUserId() throws NoAuthenticatedYouTagUser {
+        return authService.getCurrentUser().email();
+    }
+
+    /**
+     * Start importing the request body. Send it as text/csv with one videoId,tag1,tag2,... line per video, or as
+     * application/json with an array of {"videoId": "...", "tags": [...]}.
+     * Respond with the progress of the import, which can then be polled by its id.
+     */
+    @PostMapping(value = "/", consumes = {TEXT_CSV_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    ResponseEntity<ResponseModel<ImportProgress>> importLibrary(@RequestHeader("Content-Type") MediaType contentType, InputStream body) throws NoAuthenticatedYouTagUser, InvalidImport, IOException {
+        LibraryImportService.Format format = MediaType.APPLICATION_JSON.isCompatibleWith(contentType) ? LibraryImportService.Format.JSON : LibraryImportService.Format.CSV;
+        log.debug("Importing {} library of user {}", format, getCurrentUserId());
+        ImportProgress progress = libraryImportService.startImport(getCurrentUserId(), body, format);
+        return ResponseEntity.accepted().body(ResponseModel.build(progress, String.format("Started import %s", progress.getId())));
+    }
+
+    @GetMapping("/{importId}")
+    ResponseEntity<ResponseModel<ImportProgress>> getImportProgress(@PathVariable String importId) throws NoAuthenticatedYouTagUser, ImportNotFound {
+        return ResponseEntity.ok(ResponseModel.build(libraryImportService.getProgress(getCurrentUserId(), importId), null));
+    }
+}
@@ -2,7 +2,9 @@ package dev.kuku.youtagserver.shared.infrastructure;
 
 import dev.kuku.youtagserver.auth.api.exceptions.NoAuthenticatedYouTagUser;
 import dev.kuku.youtagserver.auth.api.services.AuthService;
+import dev.kuku.youtagserver.shared.application.VideoInfoTagService;
 import dev.kuku.youtagserver.shared.models.ResponseModel;
+import dev.kuku.youtagserver.shared.models.VideoInfoTagDTO;
 import dev.kuku.youtagserver.user_tag.api.UserTagService;
 import dev.kuku.youtagserver.user_video.api.UserVideoService;
 import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
@@ -22,18 +24,22 @@ public class SearchController {
     final UserTagService userTagService;
     final UserVideoService userVideoService;
     final UserVideoTagService userVideoTagService;
+    final VideoInfoTagService videoInfoTagService;
 
     /**
-     * Get tags containing keyword
+     * Get tags containing keyword. With fuzzy set, get tags a few typos away from keyword instead
      */
     @GetMapping("/tag/{keyword}")
     ResponseEntity<ResponseModel<List<String>>> getTagsContaining(
             @PathVariable() String keyword,
             @RequestParam(value = "skip", defaultValue = "0") int skip,
-            @RequestParam(value = "limit", defaultValue = "10") int limit
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "fuzzy", defaultValue = "false") boolean fuzzy
     ) throws NoAuthenticatedYouTagUser {
         String userId = authService.getCurrentUser().email();
-        List<String> tags = userTagService.getTagsOfUserContaining(userId, keyword, skip, limit);
+        List<String> tags = fuzzy
+                ? userTagService.getTagsOfUserSimilarTo(userId, keyword, skip, limit)
+                : userTagService.getTagsOfUserContaining(userId, keyword, skip, limit);
         return ResponseEntity.ok(ResponseModel.build(tags, null));
     }
 
@@ -47,17 +53,17 @@ public class SearchController {
     }
 
     /**
-     * Get videos containing keyword
+     * Full text search of title and description of saved videos, best match first
      */
     @GetMapping("/video/{keyword}")
-    ResponseEntity<ResponseModel<List<String>>> getVideosContaining(
+    ResponseEntity<ResponseModel<List<VideoInfoTagDTO>>> getVideosContaining(
             @PathVariable() String keyword,
             @RequestParam(value = "skip", defaultValue = "0") int skip,
             @RequestParam(value = "limit", defaultValue = "10") int limit
     ) throws NoAuthenticatedYouTagUser {
         String userId = authService.getCurrentUser().email();
         List<String> videoIds = userVideoService.getSavedVideosOfUserContaining(userId, keyword, skip, limit);
-        return ResponseEntity.ok(ResponseModel.build(videoIds, null));
+        return ResponseEntity.ok(ResponseModel.build(videoInfoTagService.getVideoInfoTagsOfUser(userId, videoIds), null));
     }
 }
 //TODO Adding tags should all be lowercase and trimmed.
@@ -2,16 +2,18 @@ package dev.kuku.youtagserver.shared.infrastructure;
 
 import dev.kuku.youtagserver.auth.api.exceptions.NoAuthenticatedYouTagUser;
 import dev.kuku.youtagserver.auth.api.services.AuthService;
-import dev.kuku.youtagserver.shared.api.events.RemoveVideosOrder;
 import dev.kuku.youtagserver.shared.api.events.UpdateVideoInfosOrder;
 import dev.kuku.youtagserver.shared.application.OrchestratorService;
+import dev.kuku.youtagserver.shared.application.VideoInfoTagService;
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.helper.PageCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
 import dev.kuku.youtagserver.shared.models.ResponseModel;
 import dev.kuku.youtagserver.shared.models.VideoInfoTagDTO;
 import dev.kuku.youtagserver.user_tag.api.UserTagService;
 import dev.kuku.youtagserver.user_video.api.UserVideoService;
 import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
-import dev.kuku.youtagserver.video.api.dto.VideoDTO;
-import dev.kuku.youtagserver.video.api.exceptions.VideoNotFound;
+import dev.kuku.youtagserver.user_video_tag.api.exceptions.InvalidTagQuery;
 import dev.kuku.youtagserver.video.api.services.VideoService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -30,7 +32,9 @@ import java.util.stream.Collectors;
  * - Remove all tags from video(s) (of user)
  * - Remove tag(s) from All videos (of user)
  * - Get videos with tag(s) (of user)
+ * - Get videos matching a boolean tag query (of user)
  * - Get tags of video(s) (of user)
+ * - Get the other tags of the videos with tag(s) and their counts (of user)
  * - Get tags containing "X" (of user) (for searching) LATER
  */
 @Slf4j
@@ -44,6 +48,7 @@ public class TagController {
     final UserVideoTagService userVideoTagService;
     final UserTagService userTagService;
     final OrchestratorService orchestratorService;
+    final VideoInfoTagService videoInfoTagService;
     private final VideoService videoService;
     final ApplicationEventPublisher eventPublisher;
 
@@ -64,12 +69,10 @@ public class TagController {
         List<String> videoIds = Arrays.stream(videosRaw.split(",")).map(String::trim).toList();
         List<String> tags = Arrays.stream(tagsRaw.split(",")).map(s -> s.trim().toLowerCase()).toList();
 
-        //Get list of videos saved in db
-        var existingVideos = videoService.getVideoInfos(videoIds).stream().map(VideoDTO::getId).toList();
-        var videosNotInDb = videoIds.stream().filter(vid -> !existingVideos.contains(vid)).toList();
+        //Add the videos that are not in db yet and get their info
+        var videosNotInDb = videoService.addVideos(videoIds);
         if (!videosNotInDb.isEmpty()) {
             log.debug("Videos {} not in database", videosNotInDb);
-            videoService.addVideos(videosNotInDb);
             eventPublisher.publishEvent(new UpdateVideoInfosOrder(videosNotInDb));
         }
 
@@ -130,8 +133,11 @@ public class TagController {
             @RequestParam(value = "tags", defaultValue = "") String tagsRaw,
             @RequestParam(value = "videos", defaultValue = "") String videosRaw,
             @RequestParam(value = "skip", defaultValue = "0") int skip,
-            @RequestParam(value = "limit", defaultValue = "10") int limit
-    ) throws NoAuthenticatedYouTagUser {
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "query", required = false) String query,
+            @RequestParam(value = "explain", defaultValue = "false") boolean explain
+    ) throws NoAuthenticatedYouTagUser, InvalidCursor, InvalidTagQuery {
         List<String> tags = Arrays.stream(tagsRaw.split(",")).map(s -> s.trim().toLowerCase()).toList();
         List<String> videoIds = Arrays.stream(videosRaw.split(",")).map(String::trim).toList();
 
@@ -143,11 +149,32 @@ public class TagController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ResponseModel.build(null, "Both tags and videos query parameter can't be passed simultaneously"));
         }
 
+        /*
+        If query is provided return videos matching the boolean tag query, or how the query was planned if explain is set
+         */
+        if (query != null) {
+            if (!tagsRaw.isEmpty() || !videosRaw.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ResponseModel.build(null, "query can't be passed with tags or videos query parameter"));
+            }
+            if (explain) {
+                log.debug("Explaining tag query {} of user {}", query, getCurrentUserId());
+                return ResponseEntity.ok(ResponseModel.build(userVideoTagService.explainQuery(getCurrentUserId(), query), null));
+            }
+            log.debug("Getting all videos matching tag query {} for user {}", query, getCurrentUserId());
+            CursorPage<String> page = userVideoTagService.getAllSavedVideosOfUserMatchingQuery(getCurrentUserId(), query, cursor, limit);
+            List<VideoInfoTagDTO> videoInfoTagDTOS = videoInfoTagService.getVideoInfoTagsOfUser(getCurrentUserId(), page.items());
+            return withNextCursor(page.nextCursor()).body(ResponseModel.build(videoInfoTagDTOS, null));
+        }
+
         /*
         If none is provided return all tags of user
          */
         if (tagsRaw.isEmpty() && videosRaw.isEmpty()) {
             log.debug("Getting all tags of user {}", getCurrentUserId());
+            if (cursor != null) {
+                CursorPage<String> page = userTagService.getAllTagsOfUser(getCurrentUserId(), cursor, limit);
+                return withNextCursor(page.nextCursor()).body(ResponseModel.build(page.items(), null));
+            }
             List<String> tagsOfUser = userTagService.getAllTagsOfUser(getCurrentUserId(), skip, limit);
             return ResponseEntity.ok(ResponseModel.build(tagsOfUser, null));
         }
@@ -157,17 +184,13 @@ public class TagController {
          */
         if (!tagsRaw.isEmpty() && videosRaw.isEmpty()) {
             log.debug("Getting all videos with tag {} for user {}", tags, getCurrentUserId());
+            if (cursor != null) {
+                CursorPage<String> page = userVideoTagService.getAllSavedVideosOfUserWithTags(getCurrentUserId(), tags, cursor, limit);
+                List<VideoInfoTagDTO> videoInfoTagDTOS = videoInfoTagService.getVideoInfoTagsOfUser(getCurrentUserId(), page.items());
+                return withNextCursor(page.nextCursor()).body(ResponseModel.build(videoInfoTagDTOS, null));
+            }
             Set<String> videoIdsWithTags = userVideoTagService.getAllSavedVideosOfUserWithTags(getCurrentUserId(), tags, skip, limit);
-            List<VideoInfoTagDTO> videoInfoTagDTOS = new ArrayList<>();
-            videoIdsWithTags.forEach(s -> {
-                try {
-                    var videoInfo = videoService.getVideoInfo(s);
-                    videoInfoTagDTOS.add(new VideoInfoTagDTO(videoInfo, new HashSet<>(tags)));
-                } catch (VideoNotFound e) {
-                    log.error("Video not found {}", s);
-                    eventPublisher.publishEvent(new RemoveVideosOrder(Set.of(s)));
-                }
-            });
+            List<VideoInfoTagDTO> videoInfoTagDTOS = videoInfoTagService.getVideoInfoTagsOfUser(getCurrentUserId(), new ArrayList<>(videoIdsWithTags));
             return ResponseEntity.ok(ResponseModel.build(videoInfoTagDTOS, null));
         }
 
@@ -179,6 +202,36 @@ public class TagController {
         return ResponseEntity.ok(ResponseModel.build(tagsOfVideos, null));
     }
 
+    /**
+     * Other tags of the videos matching the tags or the query, with how many of those videos have each. Lets the UI
+     * offer the next refinement without loading the whole result.
+     */
+    @GetMapping("/facets")
+    ResponseEntity<ResponseModel<Object>> getTagFacetsOfUser(
+            @RequestParam(value = "tags", defaultValue = "") String tagsRaw,
+            @RequestParam(value = "query", required = false) String query,
+            @RequestParam(value = "limit", defaultValue = "20") int limit
+    ) throws NoAuthenticatedYouTagUser, InvalidTagQuery {
+        if (tagsRaw.isBlank() == (query == null)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ResponseModel.build(null, "Exactly one of tags and query query parameter is required"));
+        }
+        if (query != null) {
+            log.debug("Getting tag facets of videos matching tag query {} for user {}", query, getCurrentUserId());
+            return ResponseEntity.ok(ResponseModel.build(userVideoTagService.getTagFacetsOfSavedVideosOfUserMatchingQuery(getCurrentUserId(), query, limit), null));
+        }
+        List<String> tags = Arrays.stream(tagsRaw.split(",")).map(s -> s.trim().toLowerCase()).toList();
+        log.debug("Getting tag facets of videos with tags {} for user {}", tags, getCurrentUserId());
+        return ResponseEntity.ok(ResponseModel.build(userVideoTagService.getTagFacetsOfSavedVideosOfUserWithTags(getCurrentUserId(), tags, limit), null));
+    }
+
+    private ResponseEntity.BodyBuilder withNextCursor(String nextCursor) {
+        var response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response;
+    }
+
     @GetMapping("/count")
     ResponseEntity<ResponseModel<Long>> tagCountOfUser() throws NoAuthenticatedYouTagUser {
         String userId = getCurrentUserId();
@@ -2,18 +2,22 @@ package dev.kuku.youtagserver.shared.infrastructure;
 
 import dev.kuku.youtagserver.auth.api.exceptions.NoAuthenticatedYouTagUser;
 import dev.kuku.youtagserver.auth.api.services.AuthService;
-import dev.kuku.youtagserver.shared.api.events.RemoveVideosOrder;
 import dev.kuku.youtagserver.shared.api.events.UpdateVideoInfosOrder;
 import dev.kuku.youtagserver.shared.application.OrchestratorService;
+import dev.kuku.youtagserver.shared.application.VideoInfoTagService;
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.helper.PageCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
 import dev.kuku.youtagserver.shared.models.ResponseModel;
 import dev.kuku.youtagserver.shared.models.VideoInfoTagDTO;
+import dev.kuku.youtagserver.user_tag.api.UserTagService;
 import dev.kuku.youtagserver.user_video.api.UserVideoService;
 import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
 import dev.kuku.youtagserver.video.api.dto.VideoDTO;
-import dev.kuku.youtagserver.video.api.exceptions.VideoAlreadyExists;
 import dev.kuku.youtagserver.video.api.exceptions.VideoNotFound;
 import dev.kuku.youtagserver.video.api.services.VideoService;
 import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import dev.kuku.youtagserver.webscraper.api.exceptions.ScraperUnavailable;
 import dev.kuku.youtagserver.webscraper.api.services.YoutubeScrapperService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,10 +26,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -39,13 +40,16 @@ import java.util.stream.Collectors;
 @RestController
 @RequestMapping("/api/authenticated/video")
 public class VideoController {
+    private static final int TAG_SUGGESTIONS = 10;
     private final VideoService videoService;
     final UserVideoService userVideoService;
     private final AuthService authService;
     private final YoutubeScrapperService scrapperService;
     private final UserVideoTagService userVideoTagService;
+    private final UserTagService userTagService;
     private final ApplicationEventPublisher eventPublisher;
     private final OrchestratorService orchestratorService;
+    private final VideoInfoTagService videoInfoTagService;
 
     private String getCurrentUser() throws NoAuthenticatedYouTagUser {
         return authService.getCurrentUser().email();
@@ -56,13 +60,15 @@ public class VideoController {
      * If not, determine if the video is saved in video's table
      * If it's not saved, save it after getting its info.
      * Save the video to the user in user_video table
+     * Respond with tags suggested for the video from the tags other users gave it
      *
      * @param videoId id of the video to save
      * @throws NoAuthenticatedYouTagUser if no user was extracted from jwt token provided as authorization header
      * @throws InvalidVideoId            if the videoId is wrong and scrapper failed to get video info
+     * @throws ScraperUnavailable        if the video is new and youtube couldn't be reached to get its info
      */
     @PostMapping("/{videoId}")
-    ResponseEntity<ResponseModel<Object>> saveVideo(@PathVariable String videoId) throws NoAuthenticatedYouTagUser, InvalidVideoId {
+    ResponseEntity<ResponseModel<Object>> saveVideo(@PathVariable String videoId) throws NoAuthenticatedYouTagUser, InvalidVideoId, ScraperUnavailable {
         log.debug("Saving video {} to user {}", videoId, getCurrentUser());
 
         //Check if it's already saved for the user
@@ -80,16 +86,15 @@ public class VideoController {
             log.debug("Existing video {} not found. Adding to video table...", videoId);
             //Scrape video info and save it in video table
             var scrappedVideoInfo = scrapperService.getYoutubeVideoInfo(videoId);
-            try {
-                videoService.addVideo(new VideoDTO(videoId, scrappedVideoInfo.title(), scrappedVideoInfo.description(), scrappedVideoInfo.thumbnail()));
-            } catch (VideoAlreadyExists ex) {
-                log.error("This exception should have never been thrown. Oh well....... {}", ex.getMessage());
-            }
+            //Insert if missing and then update, so users saving the same new video at once don't collide
+            videoService.addVideos(List.of(videoId));
+            videoService.updateVideos(List.of(new VideoDTO(videoId, scrappedVideoInfo.title(), scrappedVideoInfo.description(), scrappedVideoInfo.thumbnail())));
         }
 
         //Save the video to the user
         userVideoService.saveVideosToUser(getCurrentUser(), List.of(videoId));
-        return ResponseEntity.ok(ResponseModel.build(null, String.format("Saved video %s to user %s", videoId, getCurrentUser())));
+        var suggestions = userVideoTagService.getTagSuggestionsForSavedVideoOfUser(getCurrentUser(), videoId, TAG_SUGGESTIONS);
+        return ResponseEntity.ok(ResponseModel.build(suggestions, String.format("Saved video %s to user %s", videoId, getCurrentUser())));
     }
 
     /**
@@ -111,17 +116,27 @@ public class VideoController {
 
     /**
      * Get all or specific videos saved for user.
+     * Passing cursor (empty for the first page) switches to keyset pagination, newest first. The cursor of the next
+     * page is then returned in the X-Next-Cursor header.
      *
      * @param skip      how many to skip
      * @param limit     how many to limit
+     * @param cursor    cursor of the previous page
      * @param videosRaw list of video infos to get. Will not be retrieved if it's not saved for user
      */
     @GetMapping("/")
     ResponseEntity<ResponseModel<Set<VideoInfoTagDTO>>> getAllSavedVideosOfUser(@RequestParam(value = "skip", defaultValue = "0") int skip,
                                                                                 @RequestParam(value = "limit", defaultValue = "10") int limit,
-                                                                                @RequestParam(value = "videos", defaultValue = "") String videosRaw) throws NoAuthenticatedYouTagUser {
+                                                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                                                @RequestParam(value = "videos", defaultValue = "") String videosRaw) throws NoAuthenticatedYouTagUser, InvalidCursor {
         List<String> savedVideoIdsOfUser;
-        if (videosRaw == null || videosRaw.isEmpty()) {
+        String nextCursor = null;
+        if ((videosRaw == null || videosRaw.isEmpty()) && cursor != null) {
+            log.debug("Getting saved videos of user {} after cursor {}", getCurrentUser(), cursor);
+            CursorPage<String> page = userVideoService.getAllSavedVideosOfUser(getCurrentUser(), cursor, limit);
+            savedVideoIdsOfUser = page.items();
+            nextCursor = page.nextCursor();
+        } else if (videosRaw == null || videosRaw.isEmpty()) {
             log.debug("Getting all saved video of user {}", getCurrentUser());
             //Get saved videos
             savedVideoIdsOfUser = userVideoService.getAllSavedVideosOfUser(getCurrentUser(), skip, limit);
@@ -131,25 +146,13 @@ public class VideoController {
             savedVideoIdsOfUser = userVideoService.getSpecificSavedVideosOfUser(getCurrentUser(), videoIds);
         }
 
-        //Get info of the videos and tags, save them in a list and return it.
-        Set<String> invalidVideos = new HashSet<>();
-        Set<VideoInfoTagDTO> videoInfoTagDTOS = new HashSet<>();
-        savedVideoIdsOfUser.forEach(videoId -> {
-            //Get info of the video
-            try {
-                VideoDTO videoDTO = videoService.getVideoInfo(videoId);
-                Set<String> videoTags = userVideoTagService.getTagsOfSavedVideoOfUser(getCurrentUser(), videoDTO.getId());
-                videoInfoTagDTOS.add(new VideoInfoTagDTO(videoDTO, videoTags));
-            } catch (VideoNotFound e) {
-                invalidVideos.add(videoId);
-            } catch (NoAuthenticatedYouTagUser e) {
-                //Can ignore. This should never happen as we already do this check at the start of the function.
-            }
-        });
-        if (!invalidVideos.isEmpty()) {
-            eventPublisher.publishEvent(new RemoveVideosOrder(invalidVideos));
+        //Get info and tags of the page with a fixed number of queries
+        List<VideoInfoTagDTO> videoInfoTagDTOS = videoInfoTagService.getVideoInfoTagsOfUser(getCurrentUser(), savedVideoIdsOfUser);
+        var response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            response.header(PageCursor.NEXT_CURSOR_HEADER, nextCursor);
         }
-        return ResponseEntity.ok(ResponseModel.build(videoInfoTagDTOS, null));
+        return response.body(ResponseModel.build(new LinkedHashSet<>(videoInfoTagDTOS), null));
     }
 
     //TODO Add endpoint to readme
@@ -163,7 +166,12 @@ public class VideoController {
             return ResponseEntity.ok(ResponseModel.build(userVideoService.getSavedVideosCountOfUser(userId), null));
         }
         log.debug("Getting videos count with tags {}", tagsRaw);
-        return ResponseEntity.ok(ResponseModel.build(userVideoTagService.getCountOfSavedVideosOfUserWithTags(userId, Arrays.stream(tagsRaw.split(",")).toList()), null));
+        List<String> tags = Arrays.stream(tagsRaw.split(",")).map(s -> s.trim().toLowerCase()).distinct().toList();
+        if (tags.size() == 1) {
+            //Single tag counts are kept on the tag itself
+            return ResponseEntity.ok(ResponseModel.build(userTagService.getVideoCountsOfTags(userId, tags).get(tags.getFirst()), null));
+        }
+        return ResponseEntity.ok(ResponseModel.build(userVideoTagService.getCountOfSavedVideosOfUserWithTags(userId, tags), null));
     }
 }
 
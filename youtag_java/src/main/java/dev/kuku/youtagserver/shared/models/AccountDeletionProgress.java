@@ -0,0 +1,21 @@
+package dev.kuku.youtagserver.shared.models;
+
+import dev.kuku.youtagserver.shared.domain.AccountDeletion;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of deleting the data of a deleted user
+ *
+ * @param phase       what is being deleted right now
+ * @param totalVideos saved videos when the deletion started
+ * @param totalTags   tags when the deletion started
+ */
+public record AccountDeletionProgress(AccountDeletion.Phase phase, long totalVideos, long totalTags, long deletedVideoTags,
+                                      long deletedVideos, long deletedTags, LocalDateTime started, LocalDateTime updated) {
+    public static AccountDeletionProgress of(AccountDeletion deletion) {
+        return new AccountDeletionProgress(deletion.getPhase(), deletion.getTotalVideos(), deletion.getTotalTags(),
+                deletion.getDeletedVideoTags(), deletion.getDeletedVideos(), deletion.getDeletedTags(), deletion.getStarted(),
+                deletion.getUpdated());
+    }
+}
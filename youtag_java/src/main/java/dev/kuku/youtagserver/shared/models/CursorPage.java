@@ -0,0 +1,15 @@
+package dev.kuku.youtagserver.shared.models;
+
+import java.util.List;
+
+/**
+ * Page of a keyset paginated listing.
+ *
+ * @param items      items of the page
+ * @param nextCursor opaque cursor to pass back to get the next page. null if this is the last page
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+    public static <J> CursorPage<J> of(List<J> items, String nextCursor) {
+        return new CursorPage<>(items, nextCursor);
+    }
+}
@@ -0,0 +1,90 @@
+package dev.kuku.youtagserver.shared.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Progress of a library import. Updated by the import while it runs and read by any thread.
+ */
+@Getter
+public class ImportProgress {
+    /**
+     * Rows that are rejected are counted but only the first ones are described.
+     */
+    public static final int MAX_REPORTED_ERRORS = 20;
+
+    public enum Status {RUNNING, COMPLETED, FAILED}
+
+    final String id;
+    @JsonIgnore
+    final String userId;
+    final Instant startedAt = Instant.now();
+    volatile Status status = Status.RUNNING;
+    volatile Instant finishedAt;
+    volatile String failure;
+    /**
+     * Rows parsed so far, including rejected ones
+     */
+    volatile long rowsRead;
+    volatile long rowsRejected;
+    /**
+     * Rows written to the database
+     */
+    volatile long rowsImported;
+    /**
+     * Videos that were not saved for the user before
+     */
+    volatile long videosSaved;
+    /**
+     * Tags that the user didn't have before
+     */
+    volatile long tagsAdded;
+    /**
+     * Tags that were added to videos
+     */
+    volatile long videoTagsAdded;
+    /**
+     * Videos that were new to the server and had their info queued for scraping
+     */
+    volatile long videosQueuedForInfo;
+    final List<String> errors = new CopyOnWriteArrayList<>();
+
+    public ImportProgress(String id, String userId) {
+        this.id = id;
+        this.userId = userId;
+    }
+
+    public void rowRead() {
+        rowsRead++;
+    }
+
+    public void rowRejected(String reason) {
+        rowsRejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(String.format("row %d: %s", rowsRead, reason));
+        }
+    }
+
+    public void batchImported(long rows, long videosSaved, long tagsAdded, long videoTagsAdded, long videosQueuedForInfo) {
+        this.rowsImported += rows;
+        this.videosSaved += videosSaved;
+        this.tagsAdded += tagsAdded;
+        this.videoTagsAdded += videoTagsAdded;
+        this.videosQueuedForInfo += videosQueuedForInfo;
+    }
+
+    public void completed() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    public void failed(String reason) {
+        failure = reason;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+}
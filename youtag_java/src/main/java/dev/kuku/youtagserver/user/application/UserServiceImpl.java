@@ -1,5 +1,8 @@
 package dev.kuku.youtagserver.user.application;
 
+import dev.kuku.youtagserver.shared.helper.CacheSpec;
+import dev.kuku.youtagserver.shared.helper.CacheSystem;
+import dev.kuku.youtagserver.shared.helper.ManagedCache;
 import dev.kuku.youtagserver.user.api.dto.UserDTO;
 import dev.kuku.youtagserver.user.api.events.UserDeletedEvent;
 import dev.kuku.youtagserver.user.api.exceptions.EmailNotFound;
@@ -9,15 +12,15 @@ import dev.kuku.youtagserver.user.api.exceptions.UserDTOHasNullValues;
 import dev.kuku.youtagserver.user.api.services.UserService;
 import dev.kuku.youtagserver.user.domain.User;
 import dev.kuku.youtagserver.user.infrastructure.UserRepo;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
@@ -25,47 +28,35 @@ import java.util.concurrent.ConcurrentHashMap;
 @Transactional
 public class UserServiceImpl implements UserService {
     final UserRepo userRepo;
-    private final Map<String, UserDTO> cache = new ConcurrentHashMap<>();
+    private final CacheSystem cacheSystem;
     private final ApplicationEventPublisher eventPublisher;
+    private ManagedCache<UserDTO> cache;
 
-    /**
-     * Generates a cache key for a user based on their email.
-     * Since email is unique identifier for users, we can use it directly as the cache key.
-     */
-    private String generateCacheKey(String email) {
-        return "user:" + email;
+    @PostConstruct
+    void setup() {
+        cache = cacheSystem.managed(UserDTO.class,
+                CacheSpec.ofSize(10_000),
+                email -> userRepo.findByEmail(email).map(this::toDto).orElse(null),
+                ManagedCache.Expiry.fromLastModified(UserDTO::created, Duration.ofMinutes(1), Duration.ofMinutes(30)));
+        log.debug("Initialized cache for user service");
     }
 
     /**
      * Evicts a specific user from the cache.
-     * Called before modifications to ensure stale data is removed.
+     * Called after modifications to ensure stale data is removed.
      */
     private void evictCache(String email) {
-        String cacheKey = generateCacheKey(email);
-        cache.remove(cacheKey);
+        cache.invalidate(email);
         log.debug("Evicted cache entry for user {}", email);
     }
 
     @Override
     public UserDTO getUser(String email) throws EmailNotFound, UserDTOHasNullValues {
-        log.info("Get user with email {}", email);
-        String cacheKey = generateCacheKey(email);
-
-        // Try to get from cache first
-        UserDTO cachedUser = cache.get(cacheKey);
-        if (cachedUser != null) {
-            log.debug("Cache hit for user {}", email);
-            return cachedUser;
-        }
-
-        // If not in cache, get from database and cache it
-        var user = userRepo.findByEmail(email).orElse(null);
-        if (user == null) {
+        log.debug("Get user with email {}", email);
+        UserDTO userDTO = cache.get(email);
+        if (userDTO == null) {
             throw new EmailNotFound(email);
         }
-
-        UserDTO userDTO = toDto(user);
-        cache.put(cacheKey, userDTO);
         return userDTO;
     }
 
@@ -107,6 +98,7 @@ public class UserServiceImpl implements UserService {
     public void deleteUser(String email) {
         //TODO Option to delete account
         userRepo.deleteById(email);
+        evictCache(email);
         eventPublisher.publishEvent(new UserDeletedEvent(email));
     }
 
@@ -1,9 +1,14 @@
 package dev.kuku.youtagserver.user_tag.api;
 
 import dev.kuku.youtagserver.shared.api.services.Service;
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
 import dev.kuku.youtagserver.user_tag.domain.UserTag;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface UserTagService extends Service<UserTag, UserTagDTO> {
@@ -12,8 +17,9 @@ public interface UserTagService extends Service<UserTag, UserTagDTO> {
      *
      * @param userId user to add the tags to
      * @param tags   tags to add
+     * @return tags that user didn't have before
      */
-    void addTagsToUser(String userId, List<String> tags);
+    List<String> addTagsToUser(String userId, List<String> tags);
 
 
     /**
@@ -26,6 +32,17 @@ public interface UserTagService extends Service<UserTag, UserTagDTO> {
      */
     List<String> getAllTagsOfUser(String userId, int skip, int limit);
 
+    /**
+     * Get tags of user in alphabetical order using keyset pagination.
+     *
+     * @param userId userId
+     * @param cursor cursor of the previous page. null or blank for the first page
+     * @param limit  how many to limit to
+     * @return page of tags and the cursor of the next page
+     * @throws InvalidCursor if the cursor is malformed
+     */
+    CursorPage<String> getAllTagsOfUser(String userId, String cursor, int limit) throws InvalidCursor;
+
     /**
      * Get tag count of user
      *
@@ -34,6 +51,41 @@ public interface UserTagService extends Service<UserTag, UserTagDTO> {
      */
     long getTagCountOfUser(String userId);
 
+    /**
+     * Add to the number of saved videos that use each tag of user. Tags that the user doesn't have are ignored
+     *
+     * @param userId userId
+     * @param deltas change of the video count of each tag. Negative for removed videos
+     */
+    void updateVideoCountsOfTags(String userId, Map<String, Long> deltas);
+
+    /**
+     * Same as {@link #updateVideoCountsOfTags} for several users with a single statement
+     *
+     * @param deltasOfUsers change of the video count of each tag of each user
+     */
+    void updateVideoCountsOfTagsOfUsers(Map<String, Map<String, Long>> deltasOfUsers);
+
+    /**
+     * Get the number of saved videos of user that use each tag
+     *
+     * @param userId userId
+     * @param tags   tags to get the video count of
+     * @return video count of each tag. 0 for tags the user doesn't have
+     */
+    Map<String, Long> getVideoCountsOfTags(String userId, Collection<String> tags);
+
+    /**
+     * Scan the tags of all users that no video uses in (userId, tag) order
+     *
+     * @param userId        userId of the last tag of the previous batch. Empty for the first batch
+     * @param tag           last tag of the previous batch. Empty for the first batch
+     * @param updatedBefore only tags last added before this are returned
+     * @param limit         how many to limit to
+     * @return tags after the given one
+     */
+    List<UserTagDTO> getUnusedTagsOfAllUsersAfter(String userId, String tag, LocalDateTime updatedBefore, int limit);
+
     long getTagCountOfUserContaining(String userId, String keyword);
 
 
@@ -47,11 +99,23 @@ public interface UserTagService extends Service<UserTag, UserTagDTO> {
     List<String> getTagsOfUserContaining(String userId, String keyword, int skip, int limit);
 
     /**
-     * Remove all tags of user
+     * Get tags that are a few typos away from the keyword. 1 edit is allowed for keywords of 3 to 5 characters and 2
+     * for longer ones. Shorter keywords fall back to {@link #getTagsOfUserContaining}
+     *
+     * @param userId  userId
+     * @param keyword possibly misspelled tag
+     * @return tags closest to the keyword first, then the most used ones
+     */
+    List<String> getTagsOfUserSimilarTo(String userId, String keyword, int skip, int limit);
+
+    /**
+     * Remove tags of user, up to limit at a time. Call until it returns less than limit to remove all of them
      *
      * @param userId userId
+     * @param limit  most tags to remove
+     * @return number of tags that were removed
      */
-    void deleteAllTagsOfUser(String userId);
+    int deleteAllTagsOfUser(String userId, int limit);
 
     /**
      * Delete specified tags from user
@@ -63,11 +127,13 @@ public interface UserTagService extends Service<UserTag, UserTagDTO> {
 
 
     /**
-     * Delete specific tags from all users
+     * Delete tags of several users that no video of the user uses with a single statement. Tags that got used or were
+     * added again in the meantime are kept
      *
-     * @param tags tags to delete
+     * @param tagsOfUsers   tags to delete of each user
+     * @param updatedBefore only tags last added before this are deleted
      */
-    void deleteSpecifiedTagsFromAllUsers(Set<String> tags);
+    void deleteUnusedTagsOfUsers(Map<String, Set<String>> tagsOfUsers, LocalDateTime updatedBefore);
 
 
 }
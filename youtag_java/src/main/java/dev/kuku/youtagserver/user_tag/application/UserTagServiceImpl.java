@@ -1,18 +1,31 @@
 package dev.kuku.youtagserver.user_tag.application;
 
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.helper.LockOrder;
+import dev.kuku.youtagserver.shared.helper.PageCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
 import dev.kuku.youtagserver.user_tag.api.UserTagDTO;
 import dev.kuku.youtagserver.user_tag.api.UserTagService;
 import dev.kuku.youtagserver.user_tag.domain.UserTag;
-import dev.kuku.youtagserver.user_tag.domain.UserTagId;
+import dev.kuku.youtagserver.user_tag.domain.UserTagCount;
+import dev.kuku.youtagserver.user_tag.infrastructure.UserTagCountRepo;
 import dev.kuku.youtagserver.user_tag.infrastructure.UserTagRepo;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,21 +33,47 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class UserTagServiceImpl implements UserTagService {
+    /**
+     * Shortest keyword that is matched anywhere in a tag instead of only at its start
+     */
+    static final int MIN_INFIX_LENGTH = 3;
+    /**
+     * Trigram similarity a tag needs to be checked for typos. Low enough that two edits of a long word pass
+     */
+    static final String FUZZY_SIMILARITY_THRESHOLD = "0.2";
+    /**
+     * Short words have few trigrams and a single swap ("rsut") can leave only the first one in common
+     */
+    static final String SHORT_FUZZY_SIMILARITY_THRESHOLD = "0.1";
+    /**
+     * How many of the most similar tags are checked for typos
+     */
+    static final int FUZZY_CANDIDATES = 64;
     final UserTagRepo repo;
+    final UserTagCountRepo countRepo;
 
     @Override
-    public void addTagsToUser(String userId, List<String> tags) {
+    public List<String> addTagsToUser(String userId, List<String> tags) {
         log.debug("Adding tags {} to user {}", tags, userId);
-        List<UserTag> userTags = tags.stream().map(tag -> new UserTag(userId, tag)).toList();
-        repo.saveAll(userTags);
+        if (tags.isEmpty()) {
+            return List.of();
+        }
+        String[] keys = LockOrder.keys(tags);
+        LocalDateTime now = LocalDateTime.now();
+        repo.touchUnused(userId, keys, now);
+        List<UserTag> userTags = repo.insertMissing(userId, keys, now);
+        if (!userTags.isEmpty()) {
+            countRepo.add(userId, userTags.size());
+        }
         //TODO Evict everything with the matching user
+        return userTags.stream().map(UserTag::getTag).toList();
     }
 
 
     @Override
     public List<String> getAllTagsOfUser(String userId, int skip, int limit) {
         log.debug("Getting all tags from user {}", userId);
-        List<UserTag> entries = repo.findAllByUserId(userId, PageRequest.of(skip / limit, limit));
+        List<UserTag> entries = repo.findAllByUserId(userId, PageRequest.of(skip / limit, limit, Sort.by("tag")));
         List<String> tags = entries.stream().map(UserTag::getTag).toList();
         log.debug("Got all tags {} for user {}", tags, userId);
         //TODO cache the result based on limit
@@ -42,40 +81,156 @@ public class UserTagServiceImpl implements UserTagService {
     }
 
     @Override
-    public void deleteAllTagsOfUser(String userId) {
-        log.debug("Removing all tags from user {}", userId);
-        repo.deleteAllByUserId(userId);
+    public CursorPage<String> getAllTagsOfUser(String userId, String cursor, int limit) throws InvalidCursor {
+        log.debug("Getting tags of user {} after cursor {} with limit {}", userId, cursor, limit);
+        List<UserTag> entries;
+        if (PageCursor.isFirstPage(cursor)) {
+            entries = repo.findAllByUserIdOrderByTagAsc(userId, PageRequest.of(0, limit));
+        } else {
+            String lastTag = PageCursor.decode(cursor, 1)[0];
+            entries = repo.findAllByUserIdAndTagGreaterThanOrderByTagAsc(userId, lastTag, PageRequest.of(0, limit));
+        }
+        List<String> tags = entries.stream().map(UserTag::getTag).toList();
+        String nextCursor = tags.size() == limit ? PageCursor.encode(tags.getLast()) : null;
+        return CursorPage.of(tags, nextCursor);
+    }
+
+    @Override
+    public int deleteAllTagsOfUser(String userId, int limit) {
+        log.debug("Removing up to {} tags from user {}", limit, userId);
+        int deleted = repo.deleteSomeByUserId(userId, limit);
+        if (deleted < limit) {
+            countRepo.deleteById(userId);
+        } else {
+            countRepo.add(userId, -deleted);
+        }
+        return deleted;
     }
 
     @Override
     public void deleteSpecifiedTagsOfUser(String userId, List<String> tagsToDelete) {
         log.debug("Deleting specified tags {} from user {}", tagsToDelete, userId);
-        repo.deleteAllById(tagsToDelete.stream().map(tag -> new UserTagId(userId, tag)).collect(Collectors.toList()));
+        if (tagsToDelete.isEmpty()) {
+            return;
+        }
+        List<UserTag> deleted = repo.deleteAllByUserIdAndTagIn(userId, tagsToDelete);
+        if (!deleted.isEmpty()) {
+            countRepo.add(userId, -deleted.size());
+        }
     }
 
 
     @Override
-    public void deleteSpecifiedTagsFromAllUsers(Set<String> tags) {
-        log.debug("Deleting specific tags {} from all users.", tags);
-        repo.deleteAllByTagIn(tags);
+    public void deleteUnusedTagsOfUsers(Map<String, Set<String>> tagsOfUsers, LocalDateTime updatedBefore) {
+        log.debug("Deleting unused tags {} of users updated before {}", tagsOfUsers, updatedBefore);
+        List<String> userIds = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        LockOrder.byKey(tagsOfUsers).forEach((userId, tagsOfUser) -> tagsOfUser.stream().sorted().forEach(tag -> {
+            userIds.add(userId);
+            tags.add(tag);
+        }));
+        if (tags.isEmpty()) {
+            return;
+        }
+        Map<String, Long> deleted = repo.deleteUnusedByUserIdAndTagPairs(userIds.toArray(String[]::new), tags.toArray(String[]::new), updatedBefore).stream()
+                .collect(Collectors.groupingBy(UserTag::getUserId, TreeMap::new, Collectors.counting()));
+        countRepo.addAll(deleted.keySet().toArray(String[]::new), deleted.values().stream().mapToLong(count -> -count).toArray());
     }
 
     @Override
     public long getTagCountOfUser(String userId) {
         log.debug("Getting tag count of user {}", userId);
-        return repo.countAllByUserId(userId);
+        return countRepo.findById(userId).map(UserTagCount::getTagCount).orElse(0L);
+    }
+
+    @Override
+    public List<UserTagDTO> getUnusedTagsOfAllUsersAfter(String userId, String tag, LocalDateTime updatedBefore, int limit) {
+        log.debug("Getting unused tags of all users after ({}, {}) updated before {} with limit {}", userId, tag, updatedBefore, limit);
+        return repo.findUnusedAfter(userId, tag, updatedBefore, limit).stream().map(this::toDto).toList();
+    }
+
+    @Override
+    public void updateVideoCountsOfTags(String userId, Map<String, Long> deltas) {
+        updateVideoCountsOfTagsOfUsers(Map.of(userId, deltas));
+    }
+
+    @Override
+    public void updateVideoCountsOfTagsOfUsers(Map<String, Map<String, Long>> deltasOfUsers) {
+        log.debug("Updating video counts of tags of users by {}", deltasOfUsers);
+        List<String> userIds = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        LockOrder.byKey(deltasOfUsers).forEach((userId, deltasOfUser) -> LockOrder.byKey(deltasOfUser).forEach((tag, delta) -> {
+            if (delta != 0) {
+                userIds.add(userId);
+                tags.add(tag);
+                deltas.add(delta);
+            }
+        }));
+        if (!deltas.isEmpty()) {
+            repo.addVideoCounts(userIds.toArray(String[]::new), tags.toArray(String[]::new), deltas.stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+
+    @Override
+    public Map<String, Long> getVideoCountsOfTags(String userId, Collection<String> tags) {
+        log.debug("Getting video counts of tags {} of user {}", tags, userId);
+        Map<String, Long> counts = new HashMap<>();
+        tags.forEach(tag -> counts.put(tag, 0L));
+        repo.findAllByUserIdAndTagIn(userId, tags).forEach(userTag -> counts.put(userTag.getTag(), userTag.getVideoCount()));
+        return counts;
     }
 
     @Override
     public long getTagCountOfUserContaining(String userId, String keyword) {
         log.debug("Getting tag count of user {} containing keyword {}", userId, keyword);
-        return repo.countAllByUserIdAndTagContaining(userId, keyword);
+        return repo.countAllByUserIdAndTagLike(userId, autocompletePattern(keyword));
     }
 
     @Override
     public List<String> getTagsOfUserContaining(String userId, String keyword, int skip, int limit) {
         log.debug("Getting tags containing ${} of user {}", keyword, userId);
-        return repo.findAllByUserIdAndTagContaining(userId, keyword, PageRequest.of(skip/limit, limit)).stream().map(UserTag::getTag).toList();
+        String prefix = escapeLike(normalize(keyword)) + "%";
+        return repo.findAllByUserIdAndTagLike(userId, autocompletePattern(keyword), prefix, PageRequest.of(skip / limit, limit)).stream().map(UserTag::getTag).toList();
+    }
+
+    @Override
+    public List<String> getTagsOfUserSimilarTo(String userId, String keyword, int skip, int limit) {
+        log.debug("Getting tags similar to {} of user {}", keyword, userId);
+        String normalized = normalize(keyword);
+        int maxEdits = EditDistance.maxEditsFor(normalized);
+        if (maxEdits == 0) {
+            return getTagsOfUserContaining(userId, normalized, skip, limit);
+        }
+        repo.setSimilarityThreshold(maxEdits == 1 ? SHORT_FUZZY_SIMILARITY_THRESHOLD : FUZZY_SIMILARITY_THRESHOLD);
+        record Match(String tag, int distance, long videoCount) {
+        }
+        return repo.findAllByUserIdAndTagSimilarTo(userId, normalized, FUZZY_CANDIDATES).stream()
+                .map(userTag -> new Match(userTag.getTag(), EditDistance.distance(normalized, userTag.getTag(), maxEdits), userTag.getVideoCount()))
+                .filter(match -> match.distance() <= maxEdits)
+                .sorted(Comparator.comparingInt(Match::distance).thenComparing(Comparator.comparingLong(Match::videoCount).reversed()))
+                .skip(skip / limit * (long) limit)
+                .limit(limit)
+                .map(Match::tag)
+                .toList();
+    }
+
+    /**
+     * Keywords of at least {@link #MIN_INFIX_LENGTH} characters match anywhere in the tag through the trigram index.
+     * Shorter keywords have no trigrams, so they only match the start of the tag through the prefix index.
+     */
+    private static String autocompletePattern(String keyword) {
+        String normalized = normalize(keyword);
+        String escaped = escapeLike(normalized);
+        return normalized.length() < MIN_INFIX_LENGTH ? escaped + "%" : "%" + escaped + "%";
+    }
+
+    private static String normalize(String keyword) {
+        return keyword.trim().toLowerCase();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     @Override
@@ -21,4 +21,13 @@ public class UserTag {
     @Id
     @Column(name = DbConst.CommonColumn.TAG)
     String tag;
+    /**
+     * Number of saved videos of the user with this tag. Only changed through {@link dev.kuku.youtagserver.user_tag.infrastructure.UserTagRepo#addVideoCount}
+     */
+    @Column(name = DbConst.UserTag.VIDEO_COUNT, insertable = false, updatable = false)
+    long videoCount;
+
+    public UserTag(String userId, String tag) {
+        this(userId, tag, 0);
+    }
 }
@@ -0,0 +1,28 @@
+package dev.kuku.youtagserver.user_tag.domain;
+
+import dev.kuku.youtagserver.shared.api.constants.DbConst;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Number of tags of a user
+ */
+@Entity
+@Table(name = DbConst.UserTagCount.TABLE_NAME)
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@Getter
+public class UserTagCount {
+    @Id
+    @Column(name = DbConst.CommonColumn.USER_ID)
+    String userId;
+    @Column(name = DbConst.UserTagCount.TAG_COUNT, nullable = false)
+    long tagCount;
+}
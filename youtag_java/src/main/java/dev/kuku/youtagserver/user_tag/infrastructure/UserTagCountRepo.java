@@ -0,0 +1,30 @@
+package dev.kuku.youtagserver.user_tag.infrastructure;
+
+import dev.kuku.youtagserver.user_tag.domain.UserTagCount;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface UserTagCountRepo extends CrudRepository<UserTagCount, String> {
+    /**
+     * Add delta to the tag count of user, creating the counter if it doesn't exist
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_tag_count (user_id, tag_count) VALUES (:userId, :delta)
+            ON CONFLICT (user_id) DO UPDATE SET tag_count = user_tag_count.tag_count + EXCLUDED.tag_count
+            """)
+    void add(@Param("userId") String userId, @Param("delta") long delta);
+
+    /**
+     * Add deltas[i] to the counter of userIds[i] with a single statement
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_tag_count (user_id, tag_count)
+            SELECT * FROM unnest(CAST(:userIds AS varchar[]), CAST(:deltas AS bigint[]))
+            ON CONFLICT (user_id) DO UPDATE SET tag_count = user_tag_count.tag_count + EXCLUDED.tag_count
+            """)
+    void addAll(@Param("userIds") String[] userIds, @Param("deltas") long[] deltas);
+}
@@ -4,22 +4,131 @@ import dev.kuku.youtagserver.user_tag.domain.UserTag;
 import dev.kuku.youtagserver.user_tag.domain.UserTagId;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
-import java.util.Set;
 
 public interface UserTagRepo extends CrudRepository<UserTag, UserTagId> {
 
     List<UserTag> findAllByUserId(String userId, PageRequest of);
 
-    void deleteAllByUserId(String userId);
+    List<UserTag> findAllByUserIdOrderByTagAsc(String userId, Pageable pageable);
 
-    void deleteAllByTagIn(Set<String> tags);
+    List<UserTag> findAllByUserIdAndTagGreaterThanOrderByTagAsc(String userId, String tag, Pageable pageable);
 
-    long countAllByUserId(String userId);
+    /**
+     * Keyset scan of the tags of all users that no video uses in (userId, tag) order. Served by the partial index of
+     * unused tags
+     */
+    @Query(nativeQuery = true, value = "SELECT * FROM user_tag WHERE video_count = 0 AND (user_id, tag) > (:userId, :tag) AND updated < :updatedBefore ORDER BY user_id, tag LIMIT :limit")
+    List<UserTag> findUnusedAfter(@Param("userId") String userId, @Param("tag") String tag, @Param("updatedBefore") LocalDateTime updatedBefore, @Param("limit") int limit);
 
-    List<UserTag> findAllByUserIdAndTagContaining(String userId, String tag, Pageable pageRequest);
+    /**
+     * Delete up to limit tags of user
+     *
+     * @return number of rows that were deleted
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM user_tag WHERE (user_id, tag) IN (SELECT user_id, tag FROM user_tag WHERE user_id = :userId LIMIT :limit)")
+    int deleteSomeByUserId(@Param("userId") String userId, @Param("limit") int limit);
 
-    long countAllByUserIdAndTagContaining(String userId, String tag);
+    @Query(nativeQuery = true, value = "DELETE FROM user_tag WHERE user_id = :userId AND tag IN (:tags) RETURNING *")
+    List<UserTag> deleteAllByUserIdAndTagIn(@Param("userId") String userId, @Param("tags") Collection<String> tags);
+
+    /**
+     * Delete tags[i] of userIds[i] if no video of the user uses it and it wasn't added again since updatedBefore
+     *
+     * @return the rows that were deleted
+     */
+    @Query(nativeQuery = true, value = """
+            DELETE FROM user_tag ut
+            USING unnest(CAST(:userIds AS varchar[]), CAST(:tags AS varchar[])) AS p(user_id, tag)
+            WHERE ut.user_id = p.user_id AND ut.tag = p.tag AND ut.video_count = 0 AND ut.updated < :updatedBefore
+            RETURNING ut.*
+            """)
+    List<UserTag> deleteUnusedByUserIdAndTagPairs(@Param("userIds") String[] userIds, @Param("tags") String[] tags, @Param("updatedBefore") LocalDateTime updatedBefore);
+
+    List<UserTag> findAllByUserIdAndTagIn(String userId, Collection<String> tags);
+
+    /**
+     * Add the tags to user in one statement, skipping the ones user already has
+     *
+     * @return the rows that were inserted
+     */
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_tag (user_id, tag, updated)
+            SELECT :userId, tag, :updated FROM unnest(CAST(:tags AS varchar[])) AS tag
+            ON CONFLICT (user_id, tag) DO NOTHING
+            RETURNING *
+            """)
+    List<UserTag> insertMissing(@Param("userId") String userId, @Param("tags") String[] tags, @Param("updated") LocalDateTime updated);
+
+    /**
+     * Mark the unused tags of user as added again, so the orphan collector keeps them until they are put on a video.
+     * A collector deleting the same rows waits for the lock and then sees the new time
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE user_tag ut SET updated = :updated
+            FROM unnest(CAST(:tags AS varchar[])) AS t(tag)
+            WHERE ut.user_id = :userId AND ut.tag = t.tag AND ut.video_count = 0
+            """)
+    void touchUnused(@Param("userId") String userId, @Param("tags") String[] tags, @Param("updated") LocalDateTime updated);
+
+    /**
+     * Add deltas[i] to the number of videos of userIds[i] that have tags[i]
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE user_tag ut SET video_count = ut.video_count + d.delta
+            FROM unnest(CAST(:userIds AS varchar[]), CAST(:tags AS varchar[]), CAST(:deltas AS bigint[])) AS d(user_id, tag, delta)
+            WHERE ut.user_id = d.user_id AND ut.tag = d.tag
+            """)
+    void addVideoCounts(@Param("userIds") String[] userIds, @Param("tags") String[] tags, @Param("deltas") long[] deltas);
+
+    /**
+     * Tags of user matching the LIKE pattern. Tags starting with prefix come first, then the most used ones
+     *
+     * @param pattern LIKE pattern with backslash as escape character
+     * @param prefix  LIKE pattern of the tags to put first
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT * FROM user_tag
+            WHERE user_id = :userId AND tag LIKE :pattern ESCAPE '\\'
+            ORDER BY tag LIKE :prefix ESCAPE '\\' DESC, video_count DESC, tag
+            """)
+    List<UserTag> findAllByUserIdAndTagLike(@Param("userId") String userId,
+                                            @Param("pattern") String pattern,
+                                            @Param("prefix") String prefix,
+                                            Pageable pageable);
+
+    /**
+     * Number of tags of user matching the LIKE pattern
+     *
+     * @param pattern LIKE pattern with backslash as escape character
+     */
+    @Query(nativeQuery = true, value = "SELECT count(*) FROM user_tag WHERE user_id = :userId AND tag LIKE :pattern ESCAPE '\\'")
+    long countAllByUserIdAndTagLike(@Param("userId") String userId, @Param("pattern") String pattern);
+
+    /**
+     * Set the trigram similarity that {@link #findAllByUserIdAndTagSimilarTo} requires, until the transaction ends
+     */
+    @Query(nativeQuery = true, value = "SELECT set_config('pg_trgm.similarity_threshold', :threshold, true)")
+    String setSimilarityThreshold(@Param("threshold") String threshold);
+
+    /**
+     * Tags of user sharing enough trigrams with keyword, most similar first. Served by the trigram index
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT * FROM user_tag
+            WHERE user_id = :userId AND tag % :keyword
+            ORDER BY similarity(tag, :keyword) DESC, video_count DESC, tag
+            LIMIT :limit
+            """)
+    List<UserTag> findAllByUserIdAndTagSimilarTo(@Param("userId") String userId, @Param("keyword") String keyword, @Param("limit") int limit);
 }
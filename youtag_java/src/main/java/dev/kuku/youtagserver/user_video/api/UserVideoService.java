@@ -1,6 +1,8 @@
 package dev.kuku.youtagserver.user_video.api;
 
 import dev.kuku.youtagserver.shared.api.services.Service;
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
 import dev.kuku.youtagserver.user_video.domain.UserVideo;
 
 import java.util.List;
@@ -13,8 +15,9 @@ public interface UserVideoService extends Service<UserVideo, UserVideoDTO> {
      *
      * @param userId   userId
      * @param videoIds ID of the video to save
+     * @return ids of the videos that were not saved before
      */
-    void saveVideosToUser(String userId, List<String> videoIds);
+    List<String> saveVideosToUser(String userId, List<String> videoIds);
 
     /**
      * Remove saved video from user
@@ -34,6 +37,17 @@ public interface UserVideoService extends Service<UserVideo, UserVideoDTO> {
      */
     List<String> getAllSavedVideosOfUser(String userId, int skip, int limit);
 
+    /**
+     * get saved videos of a user newest first using keyset pagination
+     *
+     * @param userId userId
+     * @param cursor cursor of the previous page. null or blank for the first page
+     * @param limit  how many to limit
+     * @return page of videoIds and the cursor of the next page
+     * @throws InvalidCursor if the cursor is malformed
+     */
+    CursorPage<String> getAllSavedVideosOfUser(String userId, String cursor, int limit) throws InvalidCursor;
+
     /**
      * Get specified videos of the user if they are saved for user
      *
@@ -43,21 +57,16 @@ public interface UserVideoService extends Service<UserVideo, UserVideoDTO> {
      */
     List<String> getSpecificSavedVideosOfUser(String userId, List<String> videoIds);
 
-    /**
-     * Get a list of video Ids from the parameter that are not saved to any user
-     *
-     * @param videoIds videoIds to check
-     * @return list of videos that are not saved by any user
-     */
-    Set<String> getUnusedVideosFromSet(Set<String> videoIds);
 
 
     /**
-     * Removes all videos of user
+     * Removes videos of user, up to limit at a time. Call until it returns less than limit to remove all of them
      *
-     * @Return Deleted videos
+     * @param userId userId
+     * @param limit  most videos to remove
+     * @return number of videos that were removed
      */
-    void deleteAllSavedVideosFromUser(String userId);
+    int deleteAllSavedVideosFromUser(String userId, int limit);
 
     /**
      * Delete saved videos from all user
@@ -69,12 +78,13 @@ public interface UserVideoService extends Service<UserVideo, UserVideoDTO> {
     long getSavedVideosCountOfUser(String userId);
 
     /**
-     * Return videos containing the keyword as it's title
+     * Full text search of the title and description of saved videos of user. Words are stemmed so "running" finds
+     * "run", and the keyword supports web search syntax: "quoted phrase", or, -excluded
      * @param userId userId the video has to belong to
-     * @param keyword keyword the title needs to contain
+     * @param keyword words to search for. A saved video id puts that video first on the first page
      * @param skip skip count
      * @param limit limit count
-     * @return list of videoIds
+     * @return list of videoIds, best match first
      */
     List<String> getSavedVideosOfUserContaining(String userId, String keyword, int skip, int limit);
 
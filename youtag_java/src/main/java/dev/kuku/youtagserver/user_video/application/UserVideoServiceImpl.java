@@ -1,17 +1,31 @@
 package dev.kuku.youtagserver.user_video.application;
 
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.helper.LockOrder;
+import dev.kuku.youtagserver.shared.helper.PageCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
 import dev.kuku.youtagserver.user_video.api.UserVideoDTO;
 import dev.kuku.youtagserver.user_video.api.UserVideoService;
 import dev.kuku.youtagserver.user_video.domain.UserVideo;
+import dev.kuku.youtagserver.user_video.domain.UserVideoCount;
+import dev.kuku.youtagserver.user_video.domain.UserVideoId;
+import dev.kuku.youtagserver.user_video.infrastructure.UserVideoCountRepo;
 import dev.kuku.youtagserver.user_video.infrastructure.UserVideoRepo;
+import dev.kuku.youtagserver.video.api.services.VideoService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,7 +33,10 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class UserVideoServiceImpl implements UserVideoService {
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "savedAt", "videoId");
     final UserVideoRepo repo;
+    final UserVideoCountRepo countRepo;
+    final VideoService videoService;
 
     @Override
     public UserVideoDTO toDto(UserVideo e) {
@@ -28,27 +45,67 @@ public class UserVideoServiceImpl implements UserVideoService {
 
 
     @Override
-    public void saveVideosToUser(String userId, List<String> videoIds) {
+    public List<String> saveVideosToUser(String userId, List<String> videoIds) {
         log.debug("Save video {} to user {}", videoIds, userId);
-        repo.saveAll(videoIds.stream().map(vid -> new UserVideo(userId, vid)).toList());
+        if (videoIds.isEmpty()) {
+            return List.of();
+        }
+        //Videos that are already saved are skipped so that their saved time is kept
+        List<UserVideo> newVideos = repo.insertMissing(userId, LockOrder.keys(videoIds), LocalDateTime.now());
+        if (!newVideos.isEmpty()) {
+            countRepo.add(userId, newVideos.size());
+            updateUserCounts(newVideos.stream().map(UserVideo::getVideoId).toList(), 1);
+        }
         //TODO Cache evict
+        return newVideos.stream().map(UserVideo::getVideoId).toList();
     }
 
     @Override
     public void deleteSpecificSavedVideosFromUser(String userId, Set<String> videoIds) {
         log.debug("Remove saved video {} from user {}", videoIds, userId);
-        repo.deleteAllByUserIdAndVideoIdIn(userId, videoIds.stream().toList());
+        if (videoIds.isEmpty()) {
+            return;
+        }
+        List<UserVideo> deleted = repo.deleteAllByUserIdAndVideoIdIn(userId, videoIds);
+        if (!deleted.isEmpty()) {
+            countRepo.add(userId, -deleted.size());
+            updateUserCounts(deleted.stream().map(UserVideo::getVideoId).toList(), -1);
+        }
     }
 
     @Override
     public List<String> getAllSavedVideosOfUser(String userId, int skip, int limit) {
         log.debug("Get all saved videos of user {}, skip {} and limit {}", userId, skip, limit);
-        List<UserVideo> userVideos = repo.findAllByUserId(userId, PageRequest.of(skip / limit, limit));
+        List<UserVideo> userVideos = repo.findAllByUserId(userId, PageRequest.of(skip / limit, limit, NEWEST_FIRST));
         log.debug("Got saved videos {} for user {}", userVideos, userId);
         return userVideos.stream().map(UserVideo::getVideoId).collect(Collectors.toList());
         //TODO cache
     }
 
+    @Override
+    public CursorPage<String> getAllSavedVideosOfUser(String userId, String cursor, int limit) throws InvalidCursor {
+        log.debug("Get saved videos of user {} after cursor {} with limit {}", userId, cursor, limit);
+        List<UserVideo> userVideos;
+        if (PageCursor.isFirstPage(cursor)) {
+            userVideos = repo.findFirstPageByUserId(userId, PageRequest.of(0, limit));
+        } else {
+            String[] key = PageCursor.decode(cursor, 2);
+            LocalDateTime savedAt;
+            try {
+                savedAt = LocalDateTime.parse(key[0]);
+            } catch (DateTimeParseException e) {
+                throw new InvalidCursor(cursor);
+            }
+            userVideos = repo.findPageByUserIdAfter(userId, savedAt, key[1], PageRequest.of(0, limit));
+        }
+        String nextCursor = null;
+        if (userVideos.size() == limit) {
+            UserVideo last = userVideos.getLast();
+            nextCursor = PageCursor.encode(last.getSavedAt().toString(), last.getVideoId());
+        }
+        return CursorPage.of(userVideos.stream().map(UserVideo::getVideoId).toList(), nextCursor);
+    }
+
     @Override
     public List<String> getSpecificSavedVideosOfUser(String userId, List<String> videoIds) {
         log.debug("Getting specific videos {} saved for user {}", videoIds, userId);
@@ -59,36 +116,67 @@ public class UserVideoServiceImpl implements UserVideoService {
     }
 
     @Override
-    public Set<String> getUnusedVideosFromSet(Set<String> videoIds) {
-        log.debug("Getting videos {} saved by any users", videoIds);
-        var found = repo.findAllByVideoIdIn(videoIds.stream().toList()).stream().map(UserVideo::getVideoId).collect(Collectors.toSet());
-        log.debug("Found videos {}", found);
-        return videoIds.stream().filter(videoId -> !found.contains(videoId)).collect(Collectors.toSet());
-    }
-
-    @Override
-    public void deleteAllSavedVideosFromUser(String userId) {
-        log.debug("Removing all videos saved from user {}", userId);
-        repo.deleteAllByUserId(userId);
+    public int deleteAllSavedVideosFromUser(String userId, int limit) {
+        log.debug("Removing up to {} videos saved from user {}", limit, userId);
+        List<String> deleted = repo.deleteSomeByUserId(userId, limit);
+        updateUserCounts(deleted, -1);
+        if (deleted.size() < limit) {
+            countRepo.deleteById(userId);
+        } else {
+            countRepo.add(userId, -deleted.size());
+        }
+        return deleted.size();
     }
 
     @Override
     public void deleteSpecificSavedVideosForAllUsers(List<String> videoIds) {
         log.debug("Deleting videos {} from all users", videoIds);
-        repo.deleteAllByVideoIdIn(videoIds);
+        if (videoIds.isEmpty()) {
+            return;
+        }
+        List<UserVideo> deletedVideos = repo.deleteAllByVideoIdIn(videoIds);
+        Map<String, Long> deleted = deletedVideos.stream()
+                .collect(Collectors.groupingBy(UserVideo::getUserId, TreeMap::new, Collectors.counting()));
+        countRepo.addAll(deleted.keySet().toArray(String[]::new), deleted.values().stream().mapToLong(count -> -count).toArray());
+        updateUserCounts(deletedVideos.stream().map(UserVideo::getVideoId).toList(), -1);
+    }
+
+    /**
+     * Keep the number of users that saved each video in step with the saves that were added (sign 1) or removed (sign -1)
+     */
+    private void updateUserCounts(List<String> videoIds, long sign) {
+        if (videoIds.isEmpty()) {
+            return;
+        }
+        videoService.updateUserCountsOfVideos(videoIds.stream().collect(Collectors.groupingBy(videoId -> videoId, Collectors.summingLong(videoId -> sign))));
     }
 
     @Override
     public long getSavedVideosCountOfUser(String userId) {
         log.debug("Getting saved videos count of user {}", userId);
-        return repo.countAllByUserId(userId);
+        return countRepo.findById(userId).map(UserVideoCount::getVideoCount).orElse(0L);
     }
 
     @Override
     public List<String> getSavedVideosOfUserContaining(String userId, String keyword, int skip, int limit) {
         log.debug("Getting videos of user {} containing {}", userId, keyword);
-        return repo.findAllByUserIdAndVideoIdContainingIgnoreCase(userId, keyword, PageRequest.of(skip / limit, limit)).stream()
-                .map(UserVideo::getVideoId)
-                .collect(Collectors.toList());
+        //A pasted video id isn't in the title or description but should still find the video. It comes first and the
+        //matches, which leave it out, are shifted by one on every page
+        String pastedVideoId = keyword.trim();
+        int offset = skip;
+        int count = limit;
+        List<String> videoIds = new ArrayList<>();
+        if (repo.existsById(new UserVideoId(userId, pastedVideoId))) {
+            if (skip == 0) {
+                videoIds.add(pastedVideoId);
+                count--;
+            } else {
+                offset--;
+            }
+        }
+        if (count > 0) {
+            videoIds.addAll(repo.searchSavedVideosOfUser(userId, keyword, pastedVideoId, offset, count));
+        }
+        return videoIds;
     }
 }
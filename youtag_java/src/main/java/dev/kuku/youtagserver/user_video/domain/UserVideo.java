@@ -8,6 +8,8 @@ import lombok.NoArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Slf4j
 @AllArgsConstructor
@@ -23,4 +25,6 @@ public class UserVideo {
     @Id
     @Column(name = DbConst.CommonColumn.VIDEO_ID)
     String videoId;
+    @Column(name = DbConst.UserVideo.SAVED_AT, nullable = false, updatable = false)
+    LocalDateTime savedAt;
 }
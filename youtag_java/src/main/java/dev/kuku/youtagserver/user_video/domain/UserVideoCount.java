@@ -0,0 +1,28 @@
+package dev.kuku.youtagserver.user_video.domain;
+
+import dev.kuku.youtagserver.shared.api.constants.DbConst;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Number of saved videos of a user
+ */
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = DbConst.UserVideoCount.TABLE_NAME)
+@Getter
+@ToString
+public class UserVideoCount {
+    @Id
+    @Column(name = DbConst.CommonColumn.USER_ID)
+    String userId;
+    @Column(name = DbConst.UserVideoCount.VIDEO_COUNT, nullable = false)
+    long videoCount;
+}
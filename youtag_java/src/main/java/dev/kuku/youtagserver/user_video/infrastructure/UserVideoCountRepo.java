@@ -0,0 +1,30 @@
+package dev.kuku.youtagserver.user_video.infrastructure;
+
+import dev.kuku.youtagserver.user_video.domain.UserVideoCount;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+public interface UserVideoCountRepo extends CrudRepository<UserVideoCount, String> {
+    /**
+     * Add delta to the video count of user, creating the counter if it doesn't exist
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_video_count (user_id, video_count) VALUES (:userId, :delta)
+            ON CONFLICT (user_id) DO UPDATE SET video_count = user_video_count.video_count + EXCLUDED.video_count
+            """)
+    void add(@Param("userId") String userId, @Param("delta") long delta);
+
+    /**
+     * Add deltas[i] to the counter of userIds[i] with a single statement
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_video_count (user_id, video_count)
+            SELECT * FROM unnest(CAST(:userIds AS varchar[]), CAST(:deltas AS bigint[]))
+            ON CONFLICT (user_id) DO UPDATE SET video_count = user_video_count.video_count + EXCLUDED.video_count
+            """)
+    void addAll(@Param("userIds") String[] userIds, @Param("deltas") long[] deltas);
+}
@@ -4,8 +4,12 @@ import dev.kuku.youtagserver.user_video.domain.UserVideo;
 import dev.kuku.youtagserver.user_video.domain.UserVideoId;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface UserVideoRepo extends CrudRepository<UserVideo, UserVideoId> {
@@ -13,15 +17,76 @@ public interface UserVideoRepo extends CrudRepository<UserVideo, UserVideoId> {
 
     List<UserVideo> findAllByUserIdAndVideoIdIn(String userId, List<String> videoIds);
 
-    List<UserVideo> findAllByVideoIdIn(List<String> videoIds);
+    @Query(nativeQuery = true, value = "DELETE FROM user_video WHERE user_id = :userId AND video_id IN (:videoIds) RETURNING *")
+    List<UserVideo> deleteAllByUserIdAndVideoIdIn(@Param("userId") String userId, @Param("videoIds") Collection<String> videoIds);
 
-    void deleteAllByUserIdAndVideoIdIn(String userId, List<String> videoIds);
+    /**
+     * Delete up to limit saved videos of user
+     *
+     * @return ids of the videos that were deleted
+     */
+    @Query(nativeQuery = true, value = """
+            DELETE FROM user_video WHERE (user_id, video_id) IN
+            (SELECT user_id, video_id FROM user_video WHERE user_id = :userId LIMIT :limit)
+            RETURNING video_id
+            """)
+    List<String> deleteSomeByUserId(@Param("userId") String userId, @Param("limit") int limit);
 
-    List<UserVideo> deleteAllByUserId(String userId);
+    @Query(nativeQuery = true, value = "DELETE FROM user_video WHERE video_id IN (:videoIds) RETURNING *")
+    List<UserVideo> deleteAllByVideoIdIn(@Param("videoIds") Collection<String> videoIds);
 
-    List<UserVideo> deleteAllByVideoIdIn(List<String> videoIds);
+    /**
+     * Save the videos to user in one statement. Videos that are already saved keep their saved time
+     *
+     * @return the rows that were inserted
+     */
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_video (user_id, video_id, saved_at)
+            SELECT :userId, video_id, :savedAt FROM unnest(CAST(:videoIds AS varchar[])) AS video_id
+            ON CONFLICT (user_id, video_id) DO NOTHING
+            RETURNING *
+            """)
+    List<UserVideo> insertMissing(@Param("userId") String userId, @Param("videoIds") String[] videoIds, @Param("savedAt") LocalDateTime savedAt);
 
-    long countAllByUserId(String userId);
+    /**
+     * Full text search of the title and description of saved videos of user except excludedVideoId, best match first.
+     * keyword uses web search syntax ("quoted phrase", or, -excluded)
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT uv.video_id
+            FROM user_video uv
+            JOIN videos v ON v.id = uv.video_id
+            CROSS JOIN websearch_to_tsquery('english', :keyword) q
+            WHERE uv.user_id = :userId
+              AND uv.video_id <> :excludedVideoId
+              AND v.search_vector @@ q
+            ORDER BY ts_rank_cd(v.search_vector, q) DESC, uv.video_id
+            LIMIT :limit OFFSET :offset
+            """)
+    List<String> searchSavedVideosOfUser(@Param("userId") String userId, @Param("keyword") String keyword,
+                                         @Param("excludedVideoId") String excludedVideoId, @Param("offset") int offset, @Param("limit") int limit);
 
-    List<UserVideo> findAllByUserIdAndVideoIdContainingIgnoreCase(String userId, String videoId, Pageable pageable);
+    /**
+     * First page of saved videos of user, newest first
+     */
+    @Query("""
+            SELECT uv FROM UserVideo uv
+            WHERE uv.userId = :userId
+            ORDER BY uv.savedAt DESC, uv.videoId DESC
+            """)
+    List<UserVideo> findFirstPageByUserId(@Param("userId") String userId, Pageable pageable);
+
+    /**
+     * Page of saved videos of user that come after (savedAt, videoId) in newest first order
+     */
+    @Query("""
+            SELECT uv FROM UserVideo uv
+            WHERE uv.userId = :userId
+              AND (uv.savedAt < :savedAt OR (uv.savedAt = :savedAt AND uv.videoId < :videoId))
+            ORDER BY uv.savedAt DESC, uv.videoId DESC
+            """)
+    List<UserVideo> findPageByUserIdAfter(@Param("userId") String userId,
+                                          @Param("savedAt") LocalDateTime savedAt,
+                                          @Param("videoId") String videoId,
+                                          Pageable pageable);
 }
@@ -0,0 +1,10 @@
+package dev.kuku.youtagserver.user_video_tag.api;
+
+/**
+ * A tag present in a filtered set of videos.
+ *
+ * @param tag        the tag
+ * @param videoCount how many of the filtered videos have the tag
+ */
+public record TagFacet(String tag, long videoCount) {
+}
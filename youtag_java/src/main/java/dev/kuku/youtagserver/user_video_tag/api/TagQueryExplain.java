@@ -0,0 +1,16 @@
+package dev.kuku.youtagserver.user_video_tag.api;
+
+import java.util.List;
+
+/**
+ * Plan chosen for a tag query and how long it took.
+ *
+ * @param query         the query as it was parsed
+ * @param plan          one line per step in evaluation order, indented by depth. Each line has the estimated and actual
+ *                      number of videos and the time spent, or "skipped" if the step was short-circuited
+ * @param matches       number of videos matching the query
+ * @param parseMillis   time spent parsing the query
+ * @param executeMillis time spent evaluating the plan
+ */
+public record TagQueryExplain(String query, List<String> plan, long matches, double parseMillis, double executeMillis) {
+}
@@ -0,0 +1,12 @@
+package dev.kuku.youtagserver.user_video_tag.api;
+
+/**
+ * A tag suggested for a video.
+ *
+ * @param tag        the tag
+ * @param score      higher is better. Up to 1 for how many other users gave the video the tag, relative to its most
+ *                   given tag, plus up to 1 for how often the tag is used together with those tags
+ * @param usedByUser whether the user already uses the tag on other videos
+ */
+public record TagSuggestion(String tag, double score, boolean usedByUser) {
+}
@@ -1,9 +1,14 @@
 package dev.kuku.youtagserver.user_video_tag.api;
 
 import dev.kuku.youtagserver.shared.api.services.Service;
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
+import dev.kuku.youtagserver.user_video_tag.api.exceptions.InvalidTagQuery;
 import dev.kuku.youtagserver.user_video_tag.domain.UserVideoTag;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface UserVideoTagService extends Service<UserVideoTag, UserVideoTagDTO> {
@@ -16,14 +21,33 @@ public interface UserVideoTagService extends Service<UserVideoTag, UserVideoTagD
      */
     Set<String> getTagsOfSavedVideoOfUser(String userId, String videoId);
 
+    /**
+     * Get tags of several saved videos of user with a single query
+     *
+     * @param userId   userId
+     * @param videoIds videoIds to get the tags of
+     * @return tags of each video. Videos without tags map to an empty set
+     */
+    Map<String, Set<String>> getTagsOfSavedVideosOfUser(String userId, Collection<String> videoIds);
+
     /**
      * Add tags to saved videos of user
      *
      * @param userId   userId
      * @param videoIds videos to add the tags to
      * @param tags     tags to add
+     * @return entries that didn't exist before
      */
-    void addTagsToSpecificSavedVideosOfUser(String userId, List<String> videoIds, List<String> tags);
+    List<UserVideoTagDTO> addTagsToSpecificSavedVideosOfUser(String userId, List<String> videoIds, List<String> tags);
+
+    /**
+     * Add different tags to each saved video of user
+     *
+     * @param userId      userId
+     * @param tagsOfVideo tags to add to each video
+     * @return entries that didn't exist before
+     */
+    List<UserVideoTagDTO> addTagsToSavedVideosOfUser(String userId, Map<String, ? extends Collection<String>> tagsOfVideo);
 
     /**
      * Delete specified tags from saved videos of user
@@ -44,11 +68,22 @@ public interface UserVideoTagService extends Service<UserVideoTag, UserVideoTagD
     Set<String> deleteAllTagsFromSpecificSavedVideosOfUser(String userId, Set<String> videoIds);
 
     /**
-     * Delete all entries of with matching userId. Essentially removing tags from all videos of user
+     * Delete specified tags from all saved videos of user
+     *
+     * @param userId userId
+     * @param tags   tags to delete
+     */
+    void deleteSpecificTagsFromAllSavedVideosOfUser(String userId, Set<String> tags);
+
+    /**
+     * Delete entries of with matching userId, up to limit at a time. Essentially removing tags from all videos of user.
+     * Call until it returns less than limit to remove all of them
      *
      * @param userId userId
+     * @param limit  most entries to remove
+     * @return number of entries that were removed
      */
-    void deleteAllTagsFromAllVideosOfUser(String userId);
+    int deleteAllTagsFromAllVideosOfUser(String userId, int limit);
 
     /**
      * Get all the video Ids which have the following tag
@@ -61,6 +96,75 @@ public interface UserVideoTagService extends Service<UserVideoTag, UserVideoTagD
      */
     Set<String> getAllSavedVideosOfUserWithTags(String userId, List<String> tags, int skip, int limit);
 
+    /**
+     * Get the video Ids which have all the tags, ordered by videoId, using keyset pagination
+     *
+     * @param userId userId
+     * @param tags   tags that the videos needs to have
+     * @param cursor cursor of the previous page. null or blank for the first page
+     * @param limit  how many to limit
+     * @return page of video ids and the cursor of the next page
+     * @throws InvalidCursor if the cursor is malformed
+     */
+    CursorPage<String> getAllSavedVideosOfUserWithTags(String userId, List<String> tags, String cursor, int limit) throws InvalidCursor;
+
+    /**
+     * Get the video Ids matching a boolean tag query such as {@code rust & (async | tokio) & !beginner}, ordered by
+     * videoId, using keyset pagination. Only videos with at least one tag can match.
+     *
+     * @param userId userId
+     * @param query  tag query. & is and, | is or, ! is not and parentheses group. Tags with operators can be quoted
+     * @param cursor cursor of the previous page. null or blank for the first page
+     * @param limit  how many to limit
+     * @return page of video ids and the cursor of the next page
+     * @throws InvalidTagQuery if the query can't be parsed
+     * @throws InvalidCursor   if the cursor is malformed
+     */
+    CursorPage<String> getAllSavedVideosOfUserMatchingQuery(String userId, String query, String cursor, int limit) throws InvalidTagQuery, InvalidCursor;
+
+    /**
+     * Run a tag query and report the plan that was chosen and its timings instead of the videos
+     *
+     * @param userId userId
+     * @param query  tag query
+     * @return plan with estimated and actual number of videos of each step
+     * @throws InvalidTagQuery if the query can't be parsed
+     */
+    TagQueryExplain explainQuery(String userId, String query) throws InvalidTagQuery;
+
+    /**
+     * Get the other tags of the saved videos that have all the tags, with how many of those videos have each, so the
+     * filter can be refined further
+     *
+     * @param userId userId
+     * @param tags   tags that the videos needs to have
+     * @param limit  how many of the most used tags to return
+     * @return tags ordered by video count descending and then by tag. The filter tags are left out
+     */
+    List<TagFacet> getTagFacetsOfSavedVideosOfUserWithTags(String userId, List<String> tags, int limit);
+
+    /**
+     * Same as {@link #getTagFacetsOfSavedVideosOfUserWithTags} for the videos matching a boolean tag query
+     *
+     * @param userId userId
+     * @param query  tag query
+     * @param limit  how many of the most used tags to return
+     * @return tags ordered by video count descending and then by tag. The tags named in the query are left out
+     * @throws InvalidTagQuery if the query can't be parsed
+     */
+    List<TagFacet> getTagFacetsOfSavedVideosOfUserMatchingQuery(String userId, String query, int limit) throws InvalidTagQuery;
+
+    /**
+     * Suggest tags for a saved video of user from the tags other users gave the same video and from the tags of user
+     * that are often used together with those
+     *
+     * @param userId  userId
+     * @param videoId video to suggest tags for
+     * @param limit   how many to suggest
+     * @return suggestions ordered by score descending. Tags the video already has for the user are left out
+     */
+    List<TagSuggestion> getTagSuggestionsForSavedVideoOfUser(String userId, String videoId, int limit);
+
     /**
      * Get total no. of saved videos with tag
      * @param userId
@@ -85,24 +189,7 @@ public interface UserVideoTagService extends Service<UserVideoTag, UserVideoTagD
      * Delete all tags from specified videos for all users
      *
      * @param videoIds video ids to delete tags from for all users
-     * @return deleted tags
-     */
-    Set<String> deleteAllTagsFromSpecificSavedVideosForAllUser(Set<String> videoIds);
-
-    /**
-     * Get tags that are not used by the user from the tags list parameter
-     *
-     * @param userId      userId
-     * @param tagsToCheck tags to check if they are being used or not
-     * @Return Set of tags that are not used by the user
-     */
-    Set<String> getUnusedTagsOfUserFromList(String userId, Set<String> tagsToCheck);
-
-    /**
-     * Get tags that are not used by any users
-     *
-     * @param tags tags to check
-     * @return set of tags that are not used by any user
+     * @return deleted tags of each user
      */
-    Set<String> getUnusedTagsForAllUserFromList(Set<String> tags);
+    Map<String, Set<String>> deleteAllTagsFromSpecificSavedVideosForAllUser(Set<String> videoIds);
 }
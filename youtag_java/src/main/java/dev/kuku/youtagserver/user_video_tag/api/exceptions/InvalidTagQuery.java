@@ -0,0 +1,10 @@
+package dev.kuku.youtagserver.user_video_tag.api.exceptions;
+
+import dev.kuku.youtagserver.shared.exceptions.ResponseException;
+import org.springframework.http.HttpStatus;
+
+public class InvalidTagQuery extends ResponseException {
+    public InvalidTagQuery(String query, String reason) {
+        super(HttpStatus.BAD_REQUEST, String.format("Invalid tag query %s : %s", query, reason));
+    }
+}
@@ -0,0 +1,2 @@
+@org.springframework.modulith.NamedInterface
+package dev.kuku.youtagserver.user_video_tag.api.exceptions;
\ No newline at end of file
@@ -0,0 +1,190 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import dev.kuku.youtagserver.user_video_tag.api.exceptions.InvalidTagQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Parsed boolean tag query such as {@code rust & (async | tokio) & !beginner}.
+ * <p>
+ * Grammar, from lowest to highest precedence:
+ * <pre>
+ * or    := and ('|' and)*
+ * and   := unary ('&amp;' unary)*
+ * unary := '!' unary | '(' or ')' | tag
+ * tag   := "quoted text" | text up to the next operator or parenthesis
+ * </pre>
+ * Tags are trimmed and lower cased the same way they are when saved.
+ */
+sealed interface TagQuery {
+    int MAX_LENGTH = 1_000;
+    int MAX_TAGS = 64;
+    int MAX_DEPTH = 32;
+
+    record Tag(String tag) implements TagQuery {
+        @Override
+        public String toString() {
+            return '"' + tag + '"';
+        }
+    }
+
+    record And(List<TagQuery> operands) implements TagQuery {
+        @Override
+        public String toString() {
+            return operands.stream().map(TagQuery::toString).collect(Collectors.joining(" & ", "(", ")"));
+        }
+    }
+
+    record Or(List<TagQuery> operands) implements TagQuery {
+        @Override
+        public String toString() {
+            return operands.stream().map(TagQuery::toString).collect(Collectors.joining(" | ", "(", ")"));
+        }
+    }
+
+    record Not(TagQuery operand) implements TagQuery {
+        @Override
+        public String toString() {
+            return "!" + operand;
+        }
+    }
+
+    /**
+     * Query that matches the videos having every tag.
+     */
+    static TagQuery allOf(List<String> tags) {
+        List<TagQuery> operands = tags.stream().<TagQuery>map(Tag::new).toList();
+        return operands.size() == 1 ? operands.getFirst() : new And(operands);
+    }
+
+    /**
+     * Every tag named in the query, negated or not.
+     */
+    default Set<String> tags() {
+        return switch (this) {
+            case Tag tag -> Set.of(tag.tag());
+            case And and -> and.operands().stream().flatMap(operand -> operand.tags().stream()).collect(Collectors.toSet());
+            case Or or -> or.operands().stream().flatMap(operand -> operand.tags().stream()).collect(Collectors.toSet());
+            case Not not -> not.operand().tags();
+        };
+    }
+
+    static TagQuery parse(String query) throws InvalidTagQuery {
+        if (query == null || query.isBlank()) {
+            throw new InvalidTagQuery(query, "query is empty");
+        }
+        if (query.length() > MAX_LENGTH) {
+            throw new InvalidTagQuery(query.substring(0, 20) + "...", "query is longer than " + MAX_LENGTH + " characters");
+        }
+        Parser parser = new Parser(query);
+        TagQuery parsed = parser.or();
+        parser.skipSpaces();
+        if (parser.position < query.length()) {
+            throw parser.error("unexpected '" + query.charAt(parser.position) + "'");
+        }
+        return parsed;
+    }
+
+    final class Parser {
+        private final String query;
+        private int position;
+        private int tags;
+        private int depth;
+
+        private Parser(String query) {
+            this.query = query;
+        }
+
+        private TagQuery or() throws InvalidTagQuery {
+            List<TagQuery> operands = new ArrayList<>();
+            operands.add(and());
+            while (accept('|')) {
+                operands.add(and());
+            }
+            return operands.size() == 1 ? operands.getFirst() : new Or(operands);
+        }
+
+        private TagQuery and() throws InvalidTagQuery {
+            List<TagQuery> operands = new ArrayList<>();
+            operands.add(unary());
+            while (accept('&')) {
+                operands.add(unary());
+            }
+            return operands.size() == 1 ? operands.getFirst() : new And(operands);
+        }
+
+        private TagQuery unary() throws InvalidTagQuery {
+            if (accept('!')) {
+                enter();
+                TagQuery operand = unary();
+                depth--;
+                return new Not(operand);
+            }
+            if (accept('(')) {
+                enter();
+                TagQuery inner = or();
+                if (!accept(')')) {
+                    throw error("expected ')'");
+                }
+                depth--;
+                return inner;
+            }
+            return tag();
+        }
+
+        private TagQuery tag() throws InvalidTagQuery {
+            skipSpaces();
+            String tag;
+            if (position < query.length() && query.charAt(position) == '"') {
+                int end = query.indexOf('"', position + 1);
+                if (end < 0) {
+                    throw error("missing closing '\"'");
+                }
+                tag = query.substring(position + 1, end);
+                position = end + 1;
+            } else {
+                int start = position;
+                while (position < query.length() && "&|!()\"".indexOf(query.charAt(position)) < 0) {
+                    position++;
+                }
+                tag = query.substring(start, position);
+            }
+            tag = tag.trim().toLowerCase();
+            if (tag.isEmpty()) {
+                throw error("expected a tag");
+            }
+            if (++tags > MAX_TAGS) {
+                throw error("more than " + MAX_TAGS + " tags");
+            }
+            return new Tag(tag);
+        }
+
+        private void enter() throws InvalidTagQuery {
+            if (++depth > MAX_DEPTH) {
+                throw error("nested deeper than " + MAX_DEPTH);
+            }
+        }
+
+        private boolean accept(char c) {
+            skipSpaces();
+            if (position < query.length() && query.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipSpaces() {
+            while (position < query.length() && Character.isWhitespace(query.charAt(position))) {
+                position++;
+            }
+        }
+
+        private InvalidTagQuery error(String reason) {
+            return new InvalidTagQuery(query, reason + " at position " + position);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Evaluates a {@link TagQuery} against the {@link UserTagIndex} of a user.
+ * <p>
+ * Every node gets a cardinality estimate from the per tag counts of the index: a tag is exact, AND is bounded by its
+ * smallest operand, OR by the sum of its operands and NOT by the rest of the videos. AND operands are intersected from
+ * the most selective one up and negated operands are subtracted afterwards, largest first. Evaluation stops as soon as
+ * an operand is estimated or found to be empty. NOT is relative to the videos that have at least one tag.
+ * <p>
+ * Must be used inside {@link UserTagIndex#read}. One planner evaluates one query.
+ */
+final class TagQueryPlanner {
+    private final UserTagIndex index;
+    private final boolean explain;
+    private final List<Step> steps = new ArrayList<>();
+    private RoaringBitmap allVideos;
+    private int depth;
+
+    TagQueryPlanner(UserTagIndex index, boolean explain) {
+        this.index = index;
+        this.explain = explain;
+    }
+
+    RoaringBitmap execute(TagQuery query) {
+        return evaluate(query, "");
+    }
+
+    /**
+     * Steps of the last execution in evaluation order. Only recorded when explaining.
+     */
+    List<String> plan() {
+        return steps.stream().map(Step::toString).toList();
+    }
+
+    long estimate(TagQuery query) {
+        return switch (query) {
+            case TagQuery.Tag tag -> index.cardinalityOf(tag.tag());
+            case TagQuery.And and -> {
+                long estimate = index.videoCount();
+                for (TagQuery operand : and.operands()) {
+                    if (!(operand instanceof TagQuery.Not)) {
+                        estimate = Math.min(estimate, estimate(operand));
+                    }
+                }
+                yield estimate;
+            }
+            case TagQuery.Or or -> {
+                long estimate = 0;
+                for (TagQuery operand : or.operands()) {
+                    estimate += estimate(operand);
+                }
+                yield Math.min(estimate, index.videoCount());
+            }
+            case TagQuery.Not not -> Math.max(0, index.videoCount() - estimate(not.operand()));
+        };
+    }
+
+    private RoaringBitmap evaluate(TagQuery query, String prefix) {
+        Step step = record(prefix + label(query), estimate(query));
+        long start = System.nanoTime();
+        depth++;
+        RoaringBitmap result = switch (query) {
+            case TagQuery.Tag tag -> index.videosOf(tag.tag());
+            case TagQuery.And and -> evaluateAnd(and);
+            case TagQuery.Or or -> evaluateOr(or);
+            case TagQuery.Not not -> RoaringBitmap.andNot(allVideos(), evaluate(not.operand(), ""));
+        };
+        depth--;
+        if (step != null) {
+            step.rows = result.getLongCardinality();
+            step.nanos = System.nanoTime() - start;
+        }
+        return result;
+    }
+
+    private RoaringBitmap evaluateAnd(TagQuery.And and) {
+        List<TagQuery> included = new ArrayList<>();
+        List<TagQuery> excluded = new ArrayList<>();
+        for (TagQuery operand : and.operands()) {
+            if (operand instanceof TagQuery.Not not) {
+                excluded.add(not.operand());
+            } else {
+                included.add(operand);
+            }
+        }
+        included.sort(Comparator.comparingLong(this::estimate));
+        excluded.sort(Comparator.comparingLong(this::estimate).reversed());
+
+        RoaringBitmap result;
+        int next = 0;
+        if (included.isEmpty()) {
+            result = allVideos();
+        } else if (estimate(included.getFirst()) == 0) {
+            result = new RoaringBitmap();
+        } else {
+            result = evaluate(included.getFirst(), "");
+            next = 1;
+        }
+        for (; next < included.size(); next++) {
+            if (result.isEmpty()) {
+                break;
+            }
+            result = RoaringBitmap.and(result, evaluate(included.get(next), ""));
+        }
+        skip(included.subList(next, included.size()), "");
+
+        int nextExcluded = 0;
+        for (; nextExcluded < excluded.size() && !result.isEmpty(); nextExcluded++) {
+            result = RoaringBitmap.andNot(result, evaluate(excluded.get(nextExcluded), "except "));
+        }
+        skip(excluded.subList(nextExcluded, excluded.size()), "except ");
+        return result;
+    }
+
+    private RoaringBitmap evaluateOr(TagQuery.Or or) {
+        List<RoaringBitmap> results = new ArrayList<>(or.operands().size());
+        for (TagQuery operand : or.operands()) {
+            if (estimate(operand) == 0) {
+                skip(List.of(operand), "");
+            } else {
+                results.add(evaluate(operand, ""));
+            }
+        }
+        return results.isEmpty() ? new RoaringBitmap() : FastAggregation.or(results.iterator());
+    }
+
+    private RoaringBitmap allVideos() {
+        if (allVideos == null) {
+            allVideos = index.allVideos();
+        }
+        return allVideos;
+    }
+
+    private void skip(List<TagQuery> operands, String prefix) {
+        for (TagQuery operand : operands) {
+            Step step = record(prefix + label(operand), estimate(operand));
+            if (step != null) {
+                step.skipped = true;
+            }
+        }
+    }
+
+    private Step record(String label, long estimate) {
+        if (!explain) {
+            return null;
+        }
+        Step step = new Step(depth, label, estimate);
+        steps.add(step);
+        return step;
+    }
+
+    private static String label(TagQuery query) {
+        return switch (query) {
+            case TagQuery.Tag tag -> "tag " + tag;
+            case TagQuery.And and -> "and";
+            case TagQuery.Or or -> "or";
+            case TagQuery.Not not -> "not";
+        };
+    }
+
+    private static final class Step {
+        final int depth;
+        final String label;
+        final long estimate;
+        long rows;
+        long nanos;
+        boolean skipped;
+
+        Step(int depth, String label, long estimate) {
+            this.depth = depth;
+            this.label = label;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public String toString() {
+            String indent = "  ".repeat(depth);
+            if (skipped) {
+                return String.format("%s%s (estimate=%d) skipped", indent, label, estimate);
+            }
+            return String.format("%s%s (estimate=%d rows=%d time=%.3fms)", indent, label, estimate, rows, nanos / 1_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import dev.kuku.youtagserver.shared.helper.LockOrder;
+import dev.kuku.youtagserver.user_video_tag.domain.UserVideoTag;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.TagCooccurrenceRepo;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.UserVideoTagRepo;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.VideoTagStatRepo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps video_tag_stat and tag_cooccurrence in step with the writes on user_video_tag, in the same transaction.
+ * <p>
+ * Adding tag t to a video of a user adds one user to (video, t) and one video to every pair of t with the other tags
+ * the user gave the video. Removing does the opposite. Both tables only ever receive deltas, so no request has to
+ * aggregate user_video_tag.
+ */
+@Component
+@RequiredArgsConstructor
+class TagStatsUpdater {
+    final UserVideoTagRepo repo;
+    final VideoTagStatRepo videoTagStatRepo;
+    final TagCooccurrenceRepo tagCooccurrenceRepo;
+
+    /**
+     * Count entries that were just saved for the user
+     */
+    void added(String userId, Collection<UserVideoTag> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        update(entries, tagsOfVideos(userId, entries), 1);
+    }
+
+    /**
+     * Uncount entries that were just deleted for the user while the videos may keep other tags
+     */
+    void removed(String userId, Collection<UserVideoTag> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        update(entries, tagsOfVideos(userId, entries), -1);
+    }
+
+    /**
+     * Uncount entries that were just deleted along with every other tag of their videos, of any user
+     */
+    void removedAll(Collection<UserVideoTag> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        update(entries, Map.of(), -1);
+    }
+
+    /**
+     * @param changed   entries that were added or removed
+     * @param videoTags tags the videos of the user have now
+     */
+    private void update(Collection<UserVideoTag> changed, Map<VideoOfUser, Set<String>> videoTags, long sign) {
+        Map<Map.Entry<String, String>, Long> videoTagDeltas = LockOrder.byPair();
+        Map<Map.Entry<String, String>, Long> pairDeltas = LockOrder.byPair();
+        changed.stream()
+                .collect(Collectors.groupingBy(e -> new VideoOfUser(e.getUserId(), e.getVideoId()), Collectors.mapping(UserVideoTag::getTag, Collectors.toSet())))
+                .forEach((video, changedTags) -> {
+                    changedTags.forEach(tag -> videoTagDeltas.merge(Map.entry(video.videoId(), tag), sign, Long::sum));
+                    Set<String> otherTags = new HashSet<>(videoTags.getOrDefault(video, Set.of()));
+                    otherTags.removeAll(changedTags);
+                    pairsOf(changedTags, otherTags).forEach(pair -> pairDeltas.merge(pair, sign, Long::sum));
+                });
+
+        String[][] videoTagColumns = columns(videoTagDeltas.keySet());
+        videoTagStatRepo.add(videoTagColumns[0], videoTagColumns[1], values(videoTagDeltas));
+        String[][] pairs = columns(pairDeltas.keySet());
+        if (pairs[0].length > 0) {
+            tagCooccurrenceRepo.add(pairs[0], pairs[1], values(pairDeltas));
+        }
+        if (sign < 0) {
+            videoTagStatRepo.deleteUnused(videoTagColumns[0], videoTagColumns[1]);
+            if (pairs[0].length > 0) {
+                tagCooccurrenceRepo.deleteUnused(pairs[0], pairs[1]);
+            }
+        }
+    }
+
+    /**
+     * Ordered pairs of distinct tags of a video that involve at least one changed tag
+     */
+    static List<Map.Entry<String, String>> pairsOf(Set<String> changedTags, Set<String> otherTags) {
+        List<Map.Entry<String, String>> pairs = new ArrayList<>();
+        for (String tag : changedTags) {
+            for (String other : changedTags) {
+                if (!tag.equals(other)) {
+                    pairs.add(Map.entry(tag, other));
+                }
+            }
+            for (String other : otherTags) {
+                pairs.add(Map.entry(tag, other));
+                pairs.add(Map.entry(other, tag));
+            }
+        }
+        return pairs;
+    }
+
+    private Map<VideoOfUser, Set<String>> tagsOfVideos(String userId, Collection<UserVideoTag> entries) {
+        Set<String> videoIds = entries.stream().map(UserVideoTag::getVideoId).collect(Collectors.toSet());
+        return repo.findAllByUserIdAndVideoIdIn(userId, videoIds, Pageable.unpaged()).stream()
+                .collect(Collectors.groupingBy(e -> new VideoOfUser(userId, e.getVideoId()), Collectors.mapping(UserVideoTag::getTag, Collectors.toSet())));
+    }
+
+    private static String[][] columns(Collection<Map.Entry<String, String>> rows) {
+        return new String[][]{
+                rows.stream().map(Map.Entry::getKey).toArray(String[]::new),
+                rows.stream().map(Map.Entry::getValue).toArray(String[]::new)
+        };
+    }
+
+    private static long[] values(Map<?, Long> deltas) {
+        return deltas.values().stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private record VideoOfUser(String userId, String videoId) {
+    }
+}
@@ -0,0 +1,383 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import dev.kuku.youtagserver.user_video_tag.domain.UserVideoTag;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Inverted index of the tags of one user.
+ * <p>
+ * Every tagged video of the user gets a small integer ordinal and every tag maps to a compressed bitmap of the ordinals
+ * of its videos, so "videos with all these tags" is an intersection of bitmaps. Ordinals follow the order of the video
+ * ids, so a bitmap is read in id order without sorting. Videos added later get ordinals after the sorted ones, and
+ * ordinals of videos that lost all their tags are not reused; once either grows too large the index is rebuilt. Safe
+ * for concurrent use.
+ */
+final class UserTagIndex {
+    /**
+     * Videos added since the last rebuild, and videos without tags, that are tolerated before rebuilding
+     */
+    static final int MAX_UNSORTED = 1024;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    /**
+     * Video id of each ordinal. Sorted up to {@link #sortedCount}
+     */
+    private final List<String> videoIds = new ArrayList<>();
+    private int sortedCount;
+    /**
+     * Ordinals of the videos that have at least one tag
+     */
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final Map<String, RoaringBitmap> tagBitmaps = new HashMap<>();
+
+    static UserTagIndex of(Collection<UserVideoTag> entries) {
+        UserTagIndex index = new UserTagIndex();
+        for (UserVideoTag entry : entries) {
+            int ordinal = index.ordinalOf(entry.getVideoId());
+            index.tagBitmaps.computeIfAbsent(entry.getTag(), t -> new RoaringBitmap()).add(ordinal);
+            index.live.add(ordinal);
+        }
+        index.rebuild();
+        return index;
+    }
+
+    void add(Collection<String> videoIds, Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap added = new RoaringBitmap();
+            videoIds.forEach(videoId -> added.add(ordinalOf(videoId)));
+            for (String tag : tags) {
+                tagBitmaps.computeIfAbsent(tag, t -> new RoaringBitmap()).or(added);
+            }
+            live.or(added);
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Collection<String> videoIds, Collection<String> tags) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap removed = bitmapOf(videoIds);
+            for (String tag : tags) {
+                RoaringBitmap bitmap = tagBitmaps.get(tag);
+                if (bitmap != null) {
+                    bitmap.andNot(removed);
+                    if (bitmap.isEmpty()) {
+                        tagBitmaps.remove(tag);
+                    }
+                }
+            }
+            RoaringBitmap stillTagged = new RoaringBitmap();
+            for (RoaringBitmap bitmap : tagBitmaps.values()) {
+                if (stillTagged.getCardinality() == removed.getCardinality()) {
+                    break;
+                }
+                if (RoaringBitmap.intersects(bitmap, removed)) {
+                    stillTagged.or(RoaringBitmap.and(bitmap, removed));
+                }
+            }
+            live.andNot(RoaringBitmap.andNot(removed, stillTagged));
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every tag of the videos.
+     */
+    void removeVideos(Collection<String> videoIds) {
+        lock.writeLock().lock();
+        try {
+            RoaringBitmap removed = bitmapOf(videoIds);
+            if (removed.isEmpty()) {
+                return;
+            }
+            tagBitmaps.values().forEach(bitmap -> bitmap.andNot(removed));
+            tagBitmaps.values().removeIf(RoaringBitmap::isEmpty);
+            live.andNot(removed);
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ids of the videos that have every tag, sorted
+     */
+    List<String> videosWithAllTags(Collection<String> tags) {
+        lock.readLock().lock();
+        try {
+            return sortedVideoIdsAfter(intersect(tags), null, Integer.MAX_VALUE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of videos that have every tag
+     */
+    long countWithAllTags(Collection<String> tags) {
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = bitmapsSmallestFirst(tags);
+            if (bitmaps == null) {
+                return 0;
+            }
+            if (bitmaps.size() == 1) {
+                return bitmaps.getFirst().getLongCardinality();
+            }
+            if (bitmaps.size() == 2) {
+                return RoaringBitmap.andCardinality(bitmaps.get(0), bitmaps.get(1));
+            }
+            return intersect(bitmaps).getLongCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run the reader while holding the read lock. The methods below that don't lock themselves must only be called from
+     * inside a reader.
+     */
+    <R> R read(Function<UserTagIndex, R> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int cardinalityOf(String tag) {
+        RoaringBitmap bitmap = tagBitmaps.get(tag);
+        return bitmap == null ? 0 : bitmap.getCardinality();
+    }
+
+    /**
+     * @return the videos of the tag. Must not be modified
+     */
+    RoaringBitmap videosOf(String tag) {
+        RoaringBitmap bitmap = tagBitmaps.get(tag);
+        return bitmap == null ? new RoaringBitmap() : bitmap;
+    }
+
+    /**
+     * @return every video that has at least one tag. Must not be modified
+     */
+    RoaringBitmap allVideos() {
+        return live;
+    }
+
+    /**
+     * Number of videos in the index.
+     */
+    int videoCount() {
+        return live.getCardinality();
+    }
+
+    /**
+     * A page of the videos in id order. The sorted ordinals are read from the position of afterVideoId, so the cost
+     * depends on limit and not on the number of matches. Only the few videos added since the last rebuild are sorted.
+     *
+     * @param matches      videos to page through
+     * @param afterVideoId only videos after this id are returned. null for the first page
+     * @return up to limit video ids, sorted
+     */
+    List<String> sortedVideoIdsAfter(RoaringBitmap matches, String afterVideoId, int limit) {
+        List<String> sorted = new ArrayList<>(Math.min(limit, matches.getCardinality()));
+        PeekableIntIterator iterator = matches.getIntIterator();
+        if (afterVideoId != null) {
+            int position = Collections.binarySearch(videoIds.subList(0, sortedCount), afterVideoId);
+            iterator.advanceIfNeeded(position >= 0 ? position + 1 : -position - 1);
+        }
+        while (sorted.size() < limit && iterator.hasNext() && iterator.peekNext() < sortedCount) {
+            sorted.add(videoIds.get(iterator.next()));
+        }
+        List<String> unsorted = new ArrayList<>();
+        iterator = matches.getIntIterator();
+        iterator.advanceIfNeeded(sortedCount);
+        while (iterator.hasNext()) {
+            String videoId = videoIds.get(iterator.next());
+            if (afterVideoId == null || videoId.compareTo(afterVideoId) > 0) {
+                unsorted.add(videoId);
+            }
+        }
+        if (unsorted.isEmpty()) {
+            return sorted;
+        }
+        unsorted.sort(Comparator.naturalOrder());
+        List<String> page = new ArrayList<>(Math.min(limit, sorted.size() + unsorted.size()));
+        int i = 0;
+        int j = 0;
+        while (page.size() < limit && (i < sorted.size() || j < unsorted.size())) {
+            if (j == unsorted.size() || i < sorted.size() && sorted.get(i).compareTo(unsorted.get(j)) < 0) {
+                page.add(sorted.get(i++));
+            } else {
+                page.add(unsorted.get(j++));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Tags that the matching videos have, with how many of the matching videos have each, for drilling down into a
+     * result. A tag can't be in more matches than it has videos, so tags smaller than the current K-th count are skipped
+     * without intersecting.
+     *
+     * @param matches  videos of the result
+     * @param excluded tags to leave out, usually the ones of the filter
+     * @param limit    K
+     * @return the K tags with the most matching videos, by count and then tag
+     */
+    List<Map.Entry<String, Long>> topTagsOf(RoaringBitmap matches, Set<String> excluded, int limit) {
+        Comparator<Map.Entry<String, Long>> order = Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+        PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(order.reversed());
+        if (matches.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        for (Map.Entry<String, RoaringBitmap> entry : tagBitmaps.entrySet()) {
+            RoaringBitmap bitmap = entry.getValue();
+            if (top.size() == limit && bitmap.getLongCardinality() < top.peek().getValue() || excluded.contains(entry.getKey())) {
+                continue;
+            }
+            long count = RoaringBitmap.andCardinality(matches, bitmap);
+            if (count == 0) {
+                continue;
+            }
+            top.add(Map.entry(entry.getKey(), count));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Map.Entry<String, Long>> result = new ArrayList<>(top);
+        result.sort(order);
+        return result;
+    }
+
+    /**
+     * Approximate memory footprint used as the cache weight.
+     */
+    int weight() {
+        lock.readLock().lock();
+        try {
+            long bytes = 64L * videoIds.size() + live.getSizeInBytes();
+            for (RoaringBitmap bitmap : tagBitmaps.values()) {
+                bytes += bitmap.getSizeInBytes();
+            }
+            return (int) Math.min(Integer.MAX_VALUE, bytes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap intersect(Collection<String> tags) {
+        List<RoaringBitmap> bitmaps = bitmapsSmallestFirst(tags);
+        return bitmaps == null ? new RoaringBitmap() : intersect(bitmaps);
+    }
+
+    private static RoaringBitmap intersect(List<RoaringBitmap> bitmaps) {
+        RoaringBitmap result = bitmaps.getFirst().clone();
+        for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+            result.and(bitmaps.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Bitmaps of the tags ordered by cardinality so intersections start from the most selective tag.
+     *
+     * @return null if no tags were given or some tag has no videos
+     */
+    private List<RoaringBitmap> bitmapsSmallestFirst(Collection<String> tags) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            RoaringBitmap bitmap = tagBitmaps.get(tag);
+            if (bitmap == null) {
+                return null;
+            }
+            bitmaps.add(bitmap);
+        }
+        if (bitmaps.isEmpty()) {
+            return null;
+        }
+        bitmaps.sort(Comparator.comparingInt(RoaringBitmap::getCardinality));
+        return bitmaps;
+    }
+
+    private RoaringBitmap bitmapOf(Collection<String> videoIds) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (String videoId : videoIds) {
+            Integer ordinal = ordinals.get(videoId);
+            if (ordinal != null) {
+                bitmap.add(ordinal);
+            }
+        }
+        return bitmap;
+    }
+
+    private void rebuildIfNeeded() {
+        int unsorted = videoIds.size() - sortedCount;
+        int dead = videoIds.size() - live.getCardinality();
+        if (unsorted > MAX_UNSORTED || dead > Math.max(MAX_UNSORTED, live.getCardinality() / 4)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Give the videos that have tags new ordinals in id order and drop the rest.
+     */
+    private void rebuild() {
+        List<String> sortedIds = new ArrayList<>(live.getCardinality());
+        live.forEach((int ordinal) -> sortedIds.add(videoIds.get(ordinal)));
+        sortedIds.sort(Comparator.naturalOrder());
+        int[] newOrdinals = new int[videoIds.size()];
+        ordinals.clear();
+        for (int i = 0; i < sortedIds.size(); i++) {
+            ordinals.put(sortedIds.get(i), i);
+        }
+        live.forEach((int ordinal) -> newOrdinals[ordinal] = ordinals.get(videoIds.get(ordinal)));
+        tagBitmaps.replaceAll((tag, bitmap) -> {
+            int[] mapped = bitmap.toArray();
+            for (int i = 0; i < mapped.length; i++) {
+                mapped[i] = newOrdinals[mapped[i]];
+            }
+            RoaringBitmap remapped = RoaringBitmap.bitmapOfUnordered(mapped);
+            remapped.runOptimize();
+            return remapped;
+        });
+        videoIds.clear();
+        videoIds.addAll(sortedIds);
+        sortedCount = sortedIds.size();
+        live.clear();
+        live.add(0L, sortedCount);
+    }
+
+    private int ordinalOf(String videoId) {
+        Integer ordinal = ordinals.get(videoId);
+        if (ordinal == null) {
+            ordinal = videoIds.size();
+            videoIds.add(videoId);
+            ordinals.put(videoId, ordinal);
+        }
+        return ordinal;
+    }
+}
@@ -0,0 +1,113 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import dev.kuku.youtagserver.shared.helper.CacheSpec;
+import dev.kuku.youtagserver.shared.helper.CacheSystem;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.UserVideoTagRepo;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Holds the {@link UserTagIndex} of recently active users in the {@link CacheSystem}.
+ * <p>
+ * An index is loaded from user_video_tag the first time it is needed and then kept current by applying every change
+ * once its transaction commits. A rolled back change drops the index instead. Loads that overlap a committed change of
+ * the same user are served but not cached, as they may have read the table before the change was visible.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class UserTagIndexStore {
+    /**
+     * Total weight of the cached indexes, roughly in bytes.
+     */
+    static final long MAXIMUM_WEIGHT = 256L * 1024 * 1024;
+    private static final int STRIPES = 64;
+    final CacheSystem cacheSystem;
+    final UserVideoTagRepo repo;
+    private final AtomicLongArray changeStamps = new AtomicLongArray(STRIPES);
+    private final Object[] locks = new Object[STRIPES];
+
+    @PostConstruct
+    void setup() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        cacheSystem.configure(UserTagIndex.class, CacheSpec.ofSize(MAXIMUM_WEIGHT).withWeigher((userId, index) -> ((UserTagIndex) index).weight()));
+    }
+
+    UserTagIndex get(String userId) {
+        UserTagIndex index = cacheSystem.getObject(userId, UserTagIndex.class);
+        if (index != null) {
+            return index;
+        }
+        int stripe = stripeOf(userId);
+        long stamp = changeStamps.get(stripe);
+        log.debug("Loading tag index of user {}", userId);
+        UserTagIndex loaded = UserTagIndex.of(repo.findAllByUserId(userId));
+        synchronized (locks[stripe]) {
+            index = cacheSystem.getObject(userId, UserTagIndex.class);
+            if (index != null) {
+                return index;
+            }
+            if (changeStamps.get(stripe) == stamp) {
+                cacheSystem.cache(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Apply the change to the cached index of the user once the current transaction commits.
+     */
+    void onCommit(String userId, Consumer<UserTagIndex> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(userId, change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    apply(userId, change);
+                } else {
+                    apply(userId, null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Drop the index of the user once the current transaction completes.
+     */
+    void evictOnCompletion(String userId) {
+        onCommit(userId, null);
+    }
+
+    private void apply(String userId, Consumer<UserTagIndex> change) {
+        int stripe = stripeOf(userId);
+        synchronized (locks[stripe]) {
+            changeStamps.incrementAndGet(stripe);
+            if (change == null) {
+                cacheSystem.evict(userId, UserTagIndex.class);
+                return;
+            }
+            UserTagIndex index = cacheSystem.getObject(userId, UserTagIndex.class);
+            if (index != null) {
+                change.accept(index);
+                //Put it again so the cache weighs the changed index
+                cacheSystem.cache(userId, index);
+            }
+        }
+    }
+
+    private static int stripeOf(String userId) {
+        return (userId.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+}
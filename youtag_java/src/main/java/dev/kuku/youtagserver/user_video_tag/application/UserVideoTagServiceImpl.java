@@ -1,9 +1,21 @@
 package dev.kuku.youtagserver.user_video_tag.application;
 
+import dev.kuku.youtagserver.shared.exceptions.InvalidCursor;
+import dev.kuku.youtagserver.shared.helper.LockOrder;
+import dev.kuku.youtagserver.shared.helper.PageCursor;
+import dev.kuku.youtagserver.shared.models.CursorPage;
+import dev.kuku.youtagserver.user_tag.api.UserTagService;
+import dev.kuku.youtagserver.user_video_tag.api.TagFacet;
+import dev.kuku.youtagserver.user_video_tag.api.TagQueryExplain;
+import dev.kuku.youtagserver.user_video_tag.api.TagSuggestion;
 import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagDTO;
 import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
+import dev.kuku.youtagserver.user_video_tag.api.exceptions.InvalidTagQuery;
 import dev.kuku.youtagserver.user_video_tag.domain.UserVideoTag;
+import dev.kuku.youtagserver.user_video_tag.domain.VideoTagStat;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.TagCooccurrenceRepo;
 import dev.kuku.youtagserver.user_video_tag.infrastructure.UserVideoTagRepo;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.VideoTagStatRepo;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,7 +32,20 @@ import java.util.stream.Collectors;
 @Slf4j
 @Service
 public class UserVideoTagServiceImpl implements UserVideoTagService {
+    /**
+     * Most given tags of a video that suggestions are mined from
+     */
+    static final int SUGGESTION_SEEDS = 10;
+    /**
+     * Most frequent co-occurring tags considered for each of those
+     */
+    static final int SUGGESTION_CANDIDATES_PER_SEED = 100;
     final UserVideoTagRepo repo;
+    final UserTagIndexStore tagIndexStore;
+    final UserTagService userTagService;
+    final TagStatsUpdater tagStatsUpdater;
+    final VideoTagStatRepo videoTagStatRepo;
+    final TagCooccurrenceRepo tagCooccurrenceRepo;
 
     @Override
     public UserVideoTagDTO toDto(UserVideoTag e) {
@@ -36,56 +61,220 @@ public class UserVideoTagServiceImpl implements UserVideoTagService {
     }
 
     @Override
-    public void addTagsToSpecificSavedVideosOfUser(String userId, List<String> videoIds, List<String> tags) {
+    public Map<String, Set<String>> getTagsOfSavedVideosOfUser(String userId, Collection<String> videoIds) {
+        log.debug("Get tags of saved videos {} of user {}", videoIds, userId);
+        Map<String, Set<String>> tags = new HashMap<>();
+        videoIds.forEach(videoId -> tags.put(videoId, new HashSet<>()));
+        if (videoIds.isEmpty()) {
+            return tags;
+        }
+        repo.findAllByUserIdAndVideoIdIn(userId, videoIds, Pageable.unpaged())
+                .forEach(entry -> tags.computeIfAbsent(entry.getVideoId(), k -> new HashSet<>()).add(entry.getTag()));
+        return tags;
+    }
+
+    @Override
+    public List<UserVideoTagDTO> addTagsToSpecificSavedVideosOfUser(String userId, List<String> videoIds, List<String> tags) {
         log.debug("Adding tags {} to videos {} of user {}", tags, videoIds, userId);
-        List<UserVideoTag> entriesToSave = new ArrayList<>();
-        videoIds.forEach(videoId -> tags.forEach(tag -> entriesToSave.add(new UserVideoTag(userId, videoId, tag))));
-        repo.saveAll(entriesToSave);
+        if (videoIds.isEmpty() || tags.isEmpty()) {
+            return List.of();
+        }
+        List<UserVideoTag> inserted = repo.insertMissing(userId,
+                LockOrder.keys(videoIds),
+                LockOrder.keys(tags));
+        updateVideoCounts(inserted, 1);
+        tagStatsUpdater.added(userId, inserted);
+        tagIndexStore.onCommit(userId, index -> index.add(videoIds, tags));
+        return inserted.stream().map(this::toDto).toList();
+    }
+
+    @Override
+    public List<UserVideoTagDTO> addTagsToSavedVideosOfUser(String userId, Map<String, ? extends Collection<String>> tagsOfVideo) {
+        log.debug("Adding tags to {} videos of user {}", tagsOfVideo.size(), userId);
+        List<Map.Entry<String, String>> pairs = tagsOfVideo.entrySet().stream()
+                .flatMap(video -> video.getValue().stream().map(tag -> Map.entry(video.getKey(), tag)))
+                .distinct()
+                .sorted(LockOrder.PAIRS)
+                .toList();
+        if (pairs.isEmpty()) {
+            return List.of();
+        }
+        List<UserVideoTag> inserted = repo.insertMissingPairs(userId,
+                pairs.stream().map(Map.Entry::getKey).toArray(String[]::new),
+                pairs.stream().map(Map.Entry::getValue).toArray(String[]::new));
+        updateVideoCounts(inserted, 1);
+        tagStatsUpdater.added(userId, inserted);
+        List<String> videoIds = inserted.stream().map(UserVideoTag::getVideoId).toList();
+        List<String> tags = inserted.stream().map(UserVideoTag::getTag).toList();
+        tagIndexStore.onCommit(userId, index -> {
+            for (int i = 0; i < videoIds.size(); i++) {
+                index.add(List.of(videoIds.get(i)), List.of(tags.get(i)));
+            }
+        });
+        return inserted.stream().map(this::toDto).toList();
     }
 
     @Override
     public void deleteSpecificTagsFromSavedVideosOfUser(String userId, Set<String> videoIds, Set<String> tags) {
         log.debug("Deleting tags {} of user {}", tags, userId);
-        repo.deleteAllByUserIdAndVideoIdInAndTagIn(userId, videoIds, tags);
+        if (videoIds.isEmpty() || tags.isEmpty()) {
+            return;
+        }
+        var deleted = repo.deleteAllByUserIdAndVideoIdInAndTagIn(userId, videoIds, tags);
+        updateVideoCounts(deleted, -1);
+        tagStatsUpdater.removed(userId, deleted);
+        tagIndexStore.onCommit(userId, index -> index.remove(videoIds, tags));
     }
 
 
     @Override
     public Set<String> deleteAllTagsFromSpecificSavedVideosOfUser(String userId, Set<String> videoIds) {
         log.debug("Deleting all tags from saved videos {} of user {}", videoIds, userId);
+        if (videoIds.isEmpty()) {
+            return Set.of();
+        }
         var deleted = repo.deleteAllByUserIdAndVideoIdIn(userId, videoIds);
+        updateVideoCounts(deleted, -1);
+        tagStatsUpdater.removedAll(deleted);
+        tagIndexStore.onCommit(userId, index -> index.removeVideos(videoIds));
         return deleted.stream().map(UserVideoTag::getTag).collect(Collectors.toSet());
     }
 
     @Override
-    public void deleteAllTagsFromAllVideosOfUser(String userId) {
-        log.debug("Deleting all tags from all videos saved for user {}", userId);
-        repo.deleteAllByUserId(userId);
+    public void deleteSpecificTagsFromAllSavedVideosOfUser(String userId, Set<String> tags) {
+        log.debug("Deleting tags {} from all saved videos of user {}", tags, userId);
+        if (tags.isEmpty()) {
+            return;
+        }
+        var deleted = repo.deleteAllByUserIdAndTagIn(userId, tags);
+        updateVideoCounts(deleted, -1);
+        tagStatsUpdater.removed(userId, deleted);
+        Set<String> videoIds = deleted.stream().map(UserVideoTag::getVideoId).collect(Collectors.toSet());
+        tagIndexStore.onCommit(userId, index -> index.remove(videoIds, tags));
     }
 
-    //How to get entries with DISTINCT videoID and needs to contain all tags specified in tags list
-    /*
-    the table looks like this
-    userId tag videoId
+    @Override
+    public int deleteAllTagsFromAllVideosOfUser(String userId, int limit) {
+        log.debug("Deleting up to {} tags from all videos saved for user {}", limit, userId);
+        var deleted = repo.deleteSomeByUserId(userId, limit);
+        updateVideoCounts(deleted, -1);
+        //A batch can hold only some tags of a video, so the pairs with the tags it keeps are uncounted too
+        tagStatsUpdater.removed(userId, deleted);
+        tagIndexStore.evictOnCompletion(userId);
+        return deleted.size();
+    }
 
-    so we need to get distinct entry based on videoId which contains all the tags mentioned
-     */
     @Override
     public Set<String> getAllSavedVideosOfUserWithTags(String userId, List<String> tags, int skip, int limit) {
         log.debug("Getting all saved videos of user {} with tags {}", userId, tags);
         if (tags.isEmpty()) {
             return Collections.emptySet();
         }
-        List<String> videoIds = repo.findVideoIdsWithAllTags(userId, tags, tags.size(), PageRequest.of(skip / limit, limit));
-        log.debug("Got videos: {}", videoIds);
-        return new HashSet<>(videoIds);
+        List<String> videoIds = tagIndexStore.get(userId).videosWithAllTags(tags);
+        int from = Math.min(skip / limit * limit, videoIds.size());
+        List<String> page = videoIds.subList(from, Math.min(from + limit, videoIds.size()));
+        log.debug("Got videos: {}", page);
+        return new LinkedHashSet<>(page);
+    }
+
+    @Override
+    public CursorPage<String> getAllSavedVideosOfUserWithTags(String userId, List<String> tags, String cursor, int limit) throws InvalidCursor {
+        log.debug("Getting saved videos of user {} with tags {} after cursor {}", userId, tags, cursor);
+        if (tags.isEmpty()) {
+            return CursorPage.of(List.of(), null);
+        }
+        return pageAfter(userId, TagQuery.allOf(tags), cursor, limit);
+    }
+
+    @Override
+    public CursorPage<String> getAllSavedVideosOfUserMatchingQuery(String userId, String query, String cursor, int limit) throws InvalidTagQuery, InvalidCursor {
+        log.debug("Getting saved videos of user {} matching query {} after cursor {}", userId, query, cursor);
+        return pageAfter(userId, TagQuery.parse(query), cursor, limit);
+    }
+
+    @Override
+    public TagQueryExplain explainQuery(String userId, String query) throws InvalidTagQuery {
+        log.debug("Explaining query {} of user {}", query, userId);
+        long start = System.nanoTime();
+        TagQuery parsed = TagQuery.parse(query);
+        long parsedAt = System.nanoTime();
+        return tagIndexStore.get(userId).read(index -> {
+            long executeStart = System.nanoTime();
+            TagQueryPlanner planner = new TagQueryPlanner(index, true);
+            long matches = planner.execute(parsed).getLongCardinality();
+            double executeMillis = (System.nanoTime() - executeStart) / 1_000_000.0;
+            return new TagQueryExplain(parsed.toString(), planner.plan(), matches, (parsedAt - start) / 1_000_000.0, executeMillis);
+        });
+    }
+
+    @Override
+    public List<TagFacet> getTagFacetsOfSavedVideosOfUserWithTags(String userId, List<String> tags, int limit) {
+        log.debug("Getting top {} tag facets of saved videos of user {} with tags {}", limit, userId, tags);
+        return tagFacetsOf(userId, TagQuery.allOf(tags), limit);
+    }
+
+    @Override
+    public List<TagFacet> getTagFacetsOfSavedVideosOfUserMatchingQuery(String userId, String query, int limit) throws InvalidTagQuery {
+        log.debug("Getting top {} tag facets of saved videos of user {} matching query {}", limit, userId, query);
+        return tagFacetsOf(userId, TagQuery.parse(query), limit);
+    }
+
+    private List<TagFacet> tagFacetsOf(String userId, TagQuery query, int limit) {
+        return tagIndexStore.get(userId).read(index -> index.topTagsOf(new TagQueryPlanner(index, false).execute(query), query.tags(), limit)
+                .stream()
+                .map(entry -> new TagFacet(entry.getKey(), entry.getValue()))
+                .toList());
+    }
+
+    @Override
+    public List<TagSuggestion> getTagSuggestionsForSavedVideoOfUser(String userId, String videoId, int limit) {
+        log.debug("Getting {} tag suggestions for video {} of user {}", limit, videoId, userId);
+        List<VideoTagStat> videoTags = videoTagStatRepo.findAllByVideoIdOrderByUserCountDescTagAsc(videoId, PageRequest.of(0, SUGGESTION_SEEDS));
+        if (videoTags.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Double> scores = new HashMap<>();
+        double mostUsers = videoTags.getFirst().getUserCount();
+        videoTags.forEach(stat -> scores.merge(stat.getTag(), stat.getUserCount() / mostUsers, Double::sum));
+
+        List<TagCooccurrenceRepo.TagScore> related = tagCooccurrenceRepo.findCooccurringTags(
+                videoTags.stream().map(VideoTagStat::getTag).toArray(String[]::new),
+                videoTags.stream().mapToLong(VideoTagStat::getUserCount).toArray(),
+                SUGGESTION_CANDIDATES_PER_SEED);
+        Set<String> candidates = new HashSet<>(scores.keySet());
+        related.forEach(score -> candidates.add(score.getTag()));
+        Set<String> tagsOfUser = userTagService.getVideoCountsOfTags(userId, candidates).entrySet().stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        List<TagCooccurrenceRepo.TagScore> relatedOfUser = related.stream().filter(score -> tagsOfUser.contains(score.getTag())).toList();
+        if (!relatedOfUser.isEmpty()) {
+            double bestScore = relatedOfUser.getFirst().getScore();
+            relatedOfUser.forEach(score -> scores.merge(score.getTag(), score.getScore() / bestScore, Double::sum));
+        }
+
+        scores.keySet().removeAll(getTagsOfSavedVideoOfUser(userId, videoId));
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(entry -> new TagSuggestion(entry.getKey(), entry.getValue(), tagsOfUser.contains(entry.getKey())))
+                .toList();
     }
 
+    /**
+     * Page of sortedVideoIds that comes after the video in the cursor
+     */
+    private CursorPage<String> pageAfter(String userId, TagQuery query, String cursor, int limit) throws InvalidCursor {
+        String lastVideoId = PageCursor.isFirstPage(cursor) ? null : PageCursor.decode(cursor, 1)[0];
+        List<String> page = tagIndexStore.get(userId).read(index -> index.sortedVideoIdsAfter(new TagQueryPlanner(index, false).execute(query), lastVideoId, limit));
+        String nextCursor = page.size() == limit ? PageCursor.encode(page.getLast()) : null;
+        return CursorPage.of(page, nextCursor);
+    }
 
     @Override
     public long getCountOfSavedVideosOfUserWithTags(String userId, List<String> tags) {
         log.debug("Getting countOfSavedVideos of user {} with tags {}", userId, tags);
-        long count = repo.countDistinctVideosByUserIdAndTags(userId, tags, tags.size());
+        long count = tagIndexStore.get(userId).countWithAllTags(tags);
         log.debug("Got countOfSavedVideos of user {} with tags {} = {}", userId, tags, count);
         return count;
     }
@@ -99,25 +288,34 @@ public class UserVideoTagServiceImpl implements UserVideoTagService {
     }
 
     @Override
-    public Set<String> deleteAllTagsFromSpecificSavedVideosForAllUser(Set<String> videoIds) {
+    public Map<String, Set<String>> deleteAllTagsFromSpecificSavedVideosForAllUser(Set<String> videoIds) {
         log.debug("Deleting all tags from videos {} for all users", videoIds);
-        List<UserVideoTag> deletedEntries = repo.deleteAllByVideoIdIn(videoIds.stream().toList());
-        return deletedEntries.stream().map(UserVideoTag::getTag).collect(Collectors.toSet());
-    }
-
-    @Override
-    public Set<String> getUnusedTagsOfUserFromList(String userId, Set<String> tagsToCheck) {
-        log.debug("Getting tags from {} that are being used by user {}", tagsToCheck, userId);
-        Set<String> entries = repo.findAllByUserIdAndTagIn(userId, tagsToCheck.stream().toList(), Pageable.unpaged())
-                .stream().map(UserVideoTag::getTag).collect(Collectors.toSet());
-        //Return back tags from tagsToCheck that are not present in entries
-        return tagsToCheck.stream().filter(tag -> !entries.contains(tag)).collect(Collectors.toSet());
+        if (videoIds.isEmpty()) {
+            return Map.of();
+        }
+        List<UserVideoTag> deletedEntries = repo.deleteAllByVideoIdIn(videoIds);
+        tagStatsUpdater.removedAll(deletedEntries);
+        updateVideoCounts(deletedEntries, -1);
+        Map<String, Set<String>> deletedTags = new HashMap<>();
+        deletedEntries.stream()
+                .collect(Collectors.groupingBy(UserVideoTag::getUserId))
+                .forEach((userId, entries) -> {
+                    Set<String> userVideoIds = entries.stream().map(UserVideoTag::getVideoId).collect(Collectors.toSet());
+                    tagIndexStore.onCommit(userId, index -> index.removeVideos(userVideoIds));
+                    deletedTags.put(userId, entries.stream().map(UserVideoTag::getTag).collect(Collectors.toSet()));
+                });
+        return deletedTags;
     }
 
-    @Override
-    public Set<String> getUnusedTagsForAllUserFromList(Set<String> tags) {
-        log.debug("Getting unused tags from {} that are not used by any user", tags);
-        List<String> usedTags = repo.findAllByTagIn(tags.stream().toList()).stream().map(UserVideoTag::getTag).toList();
-        return tags.stream().filter(tag -> !usedTags.contains(tag)).collect(Collectors.toSet());
+    /**
+     * Keep the video count of each tag of each user in step with the entries that were added (sign 1) or removed (sign -1)
+     */
+    private void updateVideoCounts(Collection<UserVideoTag> entries, long sign) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Map<String, Map<String, Long>> deltas = entries.stream().collect(Collectors.groupingBy(UserVideoTag::getUserId,
+                Collectors.groupingBy(UserVideoTag::getTag, Collectors.summingLong(entry -> sign))));
+        userTagService.updateVideoCountsOfTagsOfUsers(deltas);
     }
 }
@@ -0,0 +1,29 @@
+package dev.kuku.youtagserver.user_video_tag.domain;
+
+import dev.kuku.youtagserver.shared.api.constants.DbConst;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Number of saved videos, across all users, that have both tags. Stored in both directions
+ */
+@Entity
+@Table(name = DbConst.TagCooccurrence.TABLE_NAME)
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@IdClass(TagCooccurrenceId.class)
+public class TagCooccurrence {
+    @Id
+    @Column(name = DbConst.CommonColumn.TAG)
+    String tag;
+    @Id
+    @Column(name = DbConst.TagCooccurrence.OTHER_TAG)
+    String otherTag;
+    @Column(name = DbConst.TagCooccurrence.VIDEO_COUNT, nullable = false)
+    long videoCount;
+}
@@ -0,0 +1,15 @@
+package dev.kuku.youtagserver.user_video_tag.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+public class TagCooccurrenceId {
+    String tag;
+    String otherTag;
+}
@@ -0,0 +1,29 @@
+package dev.kuku.youtagserver.user_video_tag.domain;
+
+import dev.kuku.youtagserver.shared.api.constants.DbConst;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Number of users that gave a video a tag
+ */
+@Entity
+@Table(name = DbConst.VideoTagStat.TABLE_NAME)
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+@IdClass(VideoTagStatId.class)
+public class VideoTagStat {
+    @Id
+    @Column(name = DbConst.CommonColumn.VIDEO_ID)
+    String videoId;
+    @Id
+    @Column(name = DbConst.CommonColumn.TAG)
+    String tag;
+    @Column(name = DbConst.VideoTagStat.USER_COUNT, nullable = false)
+    long userCount;
+}
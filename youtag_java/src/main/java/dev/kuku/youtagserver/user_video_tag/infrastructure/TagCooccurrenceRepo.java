@@ -0,0 +1,57 @@
+package dev.kuku.youtagserver.user_video_tag.infrastructure;
+
+import dev.kuku.youtagserver.user_video_tag.domain.TagCooccurrence;
+import dev.kuku.youtagserver.user_video_tag.domain.TagCooccurrenceId;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface TagCooccurrenceRepo extends CrudRepository<TagCooccurrence, TagCooccurrenceId> {
+    /**
+     * Add deltas[i] to the video count of (tags[i], otherTags[i]), creating missing rows
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO tag_cooccurrence (tag, other_tag, video_count)
+            SELECT * FROM unnest(CAST(:tags AS varchar[]), CAST(:otherTags AS varchar[]), CAST(:deltas AS bigint[]))
+            ON CONFLICT (tag, other_tag) DO UPDATE SET video_count = tag_cooccurrence.video_count + EXCLUDED.video_count
+            """)
+    void add(@Param("tags") String[] tags, @Param("otherTags") String[] otherTags, @Param("deltas") long[] deltas);
+
+    /**
+     * Delete the rows of the pairs that no video has together anymore
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            DELETE FROM tag_cooccurrence
+            WHERE video_count <= 0
+              AND (tag, other_tag) IN (SELECT * FROM unnest(CAST(:tags AS varchar[]), CAST(:otherTags AS varchar[])))
+            """)
+    void deleteUnused(@Param("tags") String[] tags, @Param("otherTags") String[] otherTags);
+
+    /**
+     * Tags that co-occur with the weighted seed tags, scored by the sum of video count times weight over the seeds.
+     * Only the perSeed most frequent co-occurring tags of each seed are considered
+     */
+    @Query(nativeQuery = true, value = """
+            SELECT c.other_tag AS tag, SUM(c.video_count * s.weight) AS score
+            FROM unnest(CAST(:tags AS varchar[]), CAST(:weights AS bigint[])) AS s(tag, weight)
+            CROSS JOIN LATERAL (
+                SELECT other_tag, video_count FROM tag_cooccurrence
+                WHERE tag = s.tag
+                ORDER BY video_count DESC
+                LIMIT :perSeed) c
+            GROUP BY c.other_tag
+            ORDER BY score DESC, c.other_tag
+            """)
+    List<TagScore> findCooccurringTags(@Param("tags") String[] tags, @Param("weights") long[] weights, @Param("perSeed") int perSeed);
+
+    interface TagScore {
+        String getTag();
+
+        long getScore();
+    }
+}
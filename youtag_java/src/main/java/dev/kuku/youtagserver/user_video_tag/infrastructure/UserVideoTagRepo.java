@@ -13,52 +13,63 @@ import java.util.List;
 public interface UserVideoTagRepo extends CrudRepository<UserVideoTag, UserVideoTagId> {
     List<UserVideoTag> findAllByUserIdAndVideoId(String userId, String videoId);
 
-    void deleteAllByUserIdAndVideoIdInAndTagIn(String userId, Collection<String> videoIds, Collection<String> tags);
-
-    List<UserVideoTag> deleteAllByUserIdAndVideoIdIn(String userId, Collection<String> videoIds);
-
-    void deleteAllByUserId(String userId);
-
-    List<UserVideoTag> findAllByUserIdAndTagIn(String userId, List<String> tags, Pageable of);
+    /**
+     * Add every tag to every video of user in one statement, skipping the pairs that already exist
+     *
+     * @return the rows that were inserted
+     */
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_video_tag (user_id, video_id, tag)
+            SELECT :userId, v.video_id, t.tag
+            FROM unnest(CAST(:videoIds AS varchar[])) AS v(video_id)
+            CROSS JOIN unnest(CAST(:tags AS varchar[])) AS t(tag)
+            ORDER BY v.video_id, t.tag
+            ON CONFLICT (user_id, video_id, tag) DO NOTHING
+            RETURNING *
+            """)
+    List<UserVideoTag> insertMissing(@Param("userId") String userId, @Param("videoIds") String[] videoIds, @Param("tags") String[] tags);
+
+    /**
+     * Add tags[i] to videoIds[i] of user in one statement, skipping the pairs that already exist
+     *
+     * @return the rows that were inserted
+     */
+    @Query(nativeQuery = true, value = """
+            INSERT INTO user_video_tag (user_id, video_id, tag)
+            SELECT :userId, video_id, tag FROM unnest(CAST(:videoIds AS varchar[]), CAST(:tags AS varchar[])) AS p(video_id, tag)
+            ON CONFLICT (user_id, video_id, tag) DO NOTHING
+            RETURNING *
+            """)
+    List<UserVideoTag> insertMissingPairs(@Param("userId") String userId, @Param("videoIds") String[] videoIds, @Param("tags") String[] tags);
+
+    List<UserVideoTag> findAllByUserId(String userId);
+
+    @Query(nativeQuery = true, value = "DELETE FROM user_video_tag WHERE user_id = :userId AND video_id IN (:videoIds) AND tag IN (:tags) RETURNING *")
+    List<UserVideoTag> deleteAllByUserIdAndVideoIdInAndTagIn(@Param("userId") String userId, @Param("videoIds") Collection<String> videoIds, @Param("tags") Collection<String> tags);
+
+    @Query(nativeQuery = true, value = "DELETE FROM user_video_tag WHERE user_id = :userId AND video_id IN (:videoIds) RETURNING *")
+    List<UserVideoTag> deleteAllByUserIdAndVideoIdIn(@Param("userId") String userId, @Param("videoIds") Collection<String> videoIds);
+
+    @Query(nativeQuery = true, value = "DELETE FROM user_video_tag WHERE user_id = :userId AND tag IN (:tags) RETURNING *")
+    List<UserVideoTag> deleteAllByUserIdAndTagIn(@Param("userId") String userId, @Param("tags") Collection<String> tags);
+
+    /**
+     * Delete up to limit tags of videos of user
+     *
+     * @return the rows that were deleted
+     */
+    @Query(nativeQuery = true, value = """
+            DELETE FROM user_video_tag WHERE (user_id, video_id, tag) IN
+            (SELECT user_id, video_id, tag FROM user_video_tag WHERE user_id = :userId LIMIT :limit)
+            RETURNING *
+            """)
+    List<UserVideoTag> deleteSomeByUserId(@Param("userId") String userId, @Param("limit") int limit);
 
     List<UserVideoTag> findAllByUserIdAndVideoIdIn(String userId, Collection<String> videoIds, Pageable of);
 
-    List<UserVideoTag> deleteAllByVideoIdIn(List<String> videoIds);
-
-    List<UserVideoTag> findAllByTagIn(List<String> tags);
+    @Query(nativeQuery = true, value = "DELETE FROM user_video_tag WHERE video_id IN (:videoIds) RETURNING *")
+    List<UserVideoTag> deleteAllByVideoIdIn(@Param("videoIds") Collection<String> videoIds);
 
 
     List<UserVideoTag> findAllByUserIdAndTagIn(String userId, List<String> tags);
-
-    @Query(value = """
-    SELECT videoId
-    FROM UserVideoTag
-    WHERE userId = :userId AND tag IN :tags
-    GROUP BY videoId
-    HAVING COUNT(DISTINCT tag) = :tagsCount
-""")
-    List<String> findVideoIdsWithAllTags(@Param("userId") String userId,
-                                         @Param("tags") List<String> tags,
-                                         @Param("tagsCount") long tagsCount,
-                                         Pageable pageable);
-
-
-    @Query("""
-SELECT COUNT(DISTINCT v.videoId) 
-FROM UserVideoTag v
-WHERE v.userId = :userId AND v.videoId IN (
-    SELECT vInner.videoId 
-    FROM UserVideoTag vInner
-    WHERE vInner.userId = :userId AND vInner.tag IN :tags
-    GROUP BY vInner.videoId
-    HAVING COUNT(DISTINCT vInner.tag) = :tagCount
-)
-""")
-    long countDistinctVideosByUserIdAndTags(
-            @Param("userId") String userId,
-            @Param("tags") List<String> tags,
-            @Param("tagCount") long tagCount
-    );
-
 }
-
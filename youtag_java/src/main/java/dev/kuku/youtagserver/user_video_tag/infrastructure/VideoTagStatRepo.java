@@ -0,0 +1,37 @@
+package dev.kuku.youtagserver.user_video_tag.infrastructure;
+
+import dev.kuku.youtagserver.user_video_tag.domain.VideoTagStat;
+import dev.kuku.youtagserver.user_video_tag.domain.VideoTagStatId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface VideoTagStatRepo extends CrudRepository<VideoTagStat, VideoTagStatId> {
+    /**
+     * Add deltas[i] to the user count of (videoIds[i], tags[i]), creating missing rows
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            INSERT INTO video_tag_stat (video_id, tag, user_count)
+            SELECT * FROM unnest(CAST(:videoIds AS varchar[]), CAST(:tags AS varchar[]), CAST(:deltas AS bigint[]))
+            ON CONFLICT (video_id, tag) DO UPDATE SET user_count = video_tag_stat.user_count + EXCLUDED.user_count
+            """)
+    void add(@Param("videoIds") String[] videoIds, @Param("tags") String[] tags, @Param("deltas") long[] deltas);
+
+    /**
+     * Delete the rows of the pairs that no user has anymore
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            DELETE FROM video_tag_stat
+            WHERE user_count <= 0
+              AND (video_id, tag) IN (SELECT * FROM unnest(CAST(:videoIds AS varchar[]), CAST(:tags AS varchar[])))
+            """)
+    void deleteUnused(@Param("videoIds") String[] videoIds, @Param("tags") String[] tags);
+
+    List<VideoTagStat> findAllByVideoIdOrderByUserCountDescTagAsc(String videoId, Pageable pageable);
+}
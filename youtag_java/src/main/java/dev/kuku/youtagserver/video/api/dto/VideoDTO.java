@@ -21,4 +21,9 @@ public class VideoDTO {
         this.description = description;
         this.thumbnail = thumbnail;
     }
+
+    public VideoDTO(String id, String title, String description, String thumbnail, LocalDateTime updated) {
+        this(id, title, description, thumbnail);
+        this.updated = updated;
+    }
 }
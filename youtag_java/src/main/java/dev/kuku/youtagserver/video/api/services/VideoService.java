@@ -7,7 +7,9 @@ import dev.kuku.youtagserver.video.api.exceptions.VideoAlreadyExists;
 import dev.kuku.youtagserver.video.api.exceptions.VideoNotFound;
 import dev.kuku.youtagserver.video.domain.Video;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public interface VideoService extends Service<Video, VideoDTO> {
@@ -17,16 +19,20 @@ public interface VideoService extends Service<Video, VideoDTO> {
     VideoDTO getVideoInfo(String id) throws VideoNotFound;
 
     /**
-     * Get video by ids
+     * Get videos by ids with at most one database query. Ids that don't exist are left out.
+     *
+     * @return videos in the order of ids
      */
     List<VideoDTO> getVideoInfos(List<String> ids);
 
     void addVideo(VideoDTO video) throws VideoAlreadyExists;
 
     /**
-     * Add videos by Ids
+     * Add videos by Ids. Their info is filled in later. Videos that already exist are left untouched
+     *
+     * @return ids of the videos that were added
      */
-    void addVideos(List<String> ids);
+    List<String> addVideos(List<String> ids);
 
     /**
      * Update info of existing video
@@ -36,11 +42,36 @@ public interface VideoService extends Service<Video, VideoDTO> {
     void updateVideo(VideoDTO video) throws VideoNotFound;
 
     /**
-     * Update videos
+     * Update videos with a single statement. Videos that don't exist are skipped
      * @param videos videos to update
      */
     void updateVideos(List<VideoDTO> videos);
 
+    /**
+     * Add to the number of users that saved each video
+     *
+     * @param deltas change of the user count of each video. Negative for removed saves
+     */
+    void updateUserCountsOfVideos(Map<String, Long> deltas);
+
+    /**
+     * Scan the ids of the videos that no user has saved in order
+     *
+     * @param videoId       last id of the previous batch. Empty for the first batch
+     * @param updatedBefore only videos last updated before this are returned
+     * @param limit         how many to limit to
+     * @return ids after the given one
+     */
+    List<String> getUnsavedVideoIdsAfter(String videoId, LocalDateTime updatedBefore, int limit);
+
+    /**
+     * Delete the videos that no user has saved. Videos that were saved in the meantime are kept
+     *
+     * @param videoIds videos to delete
+     * @return videos that were deleted
+     */
+    Set<String> deleteUnsavedVideos(Set<String> videoIds);
+
     /**
      * Delete specified video ids
      *
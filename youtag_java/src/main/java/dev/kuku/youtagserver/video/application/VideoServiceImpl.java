@@ -1,5 +1,9 @@
 package dev.kuku.youtagserver.video.application;
 
+import dev.kuku.youtagserver.shared.helper.CacheSpec;
+import dev.kuku.youtagserver.shared.helper.CacheSystem;
+import dev.kuku.youtagserver.shared.helper.LockOrder;
+import dev.kuku.youtagserver.shared.helper.ManagedCache;
 import dev.kuku.youtagserver.video.api.dto.VideoDTO;
 import dev.kuku.youtagserver.video.api.exceptions.VideoAlreadyExists;
 import dev.kuku.youtagserver.video.api.exceptions.VideoNotFound;
@@ -12,11 +16,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -26,52 +33,46 @@ import java.util.stream.Collectors;
 public class VideoServiceImpl implements VideoService {
 
     private final VideoRepo videoRepo;
-    private final Map<String, VideoDTO> cache = new ConcurrentHashMap<>();
+    private final CacheSystem cacheSystem;
+    private ManagedCache<VideoDTO> cache;
 
     /**
-     * Generates a cache key for a video based on its ID.
+     * Evicts videos from the cache.
      */
-    private String generateCacheKey(String videoId) {
-        return "video:" + videoId;
-    }
-
-    /**
-     * Evicts a specific video from the cache.
-     */
-    private void evictCache(String videoId) {
-        String cacheKey = generateCacheKey(videoId);
-        cache.remove(cacheKey);
-        log.debug("Evicted cache entry for video {}", videoId);
+    private void evictCache(Collection<String> videoIds) {
+        cache.invalidateAll(videoIds);
+        log.debug("Evicted cache entries for videos {}", videoIds);
     }
 
     @PostConstruct
     void setup() {
+        cache = cacheSystem.managed(VideoDTO.class,
+                CacheSpec.ofSize(50_000),
+                ManagedCache.Loader.of(
+                        id -> videoRepo.findById(id).map(this::toDto).orElse(null),
+                        ids -> videoRepo.findAllByIdIn(ids).stream().collect(Collectors.toMap(Video::getId, this::toDto))),
+                ManagedCache.Expiry.fromLastModified(VideoDTO::getUpdated, Duration.ofMinutes(1), Duration.ofHours(1)));
         log.debug("Initialized cache for video service");
     }
 
     @Override
     public VideoDTO getVideoInfo(String id) throws VideoNotFound {
         log.debug("Fetching video with id {}", id);
-        String cacheKey = generateCacheKey(id);
-
-        var vidInfo = cache.get(cacheKey);
-
+        var vidInfo = cache.get(id);
         if (vidInfo == null) {
-            var repoVid = videoRepo.findById(id);
-            if (repoVid.isEmpty()) {
-                throw new VideoNotFound(id);
-            } else {
-                vidInfo = toDto(repoVid.get());
-                cache.put(cacheKey, vidInfo);
-            }
+            throw new VideoNotFound(id);
         }
         return vidInfo;
     }
 
+    /**
+     * Cached videos are served from memory. The rest are fetched with one query and cached, including the ids that
+     * were not found so that they don't hit the database again until the negative entry expires.
+     */
     @Override
     public List<VideoDTO> getVideoInfos(List<String> ids) {
         log.debug("Fetching videos with ids {}", ids);
-        return videoRepo.findAllByIdIn(ids).stream().map(this::toDto).collect(Collectors.toList());
+        return new ArrayList<>(cache.getAll(ids).values());
     }
 
     @Override
@@ -89,14 +90,21 @@ public class VideoServiceImpl implements VideoService {
                     LocalDateTime.now()
             );
             videoRepo.save(newVideo);
-            evictCache(video.getId());
+            evictCache(List.of(video.getId()));
         }
     }
 
     @Override
-    public void addVideos(List<String> ids) {
+    public List<String> addVideos(List<String> ids) {
         log.debug("Adding videos {}", ids);
-        videoRepo.saveAll(ids.stream().map(s -> new Video(s, "NA", "NA", "NA", LocalDateTime.now())).collect(Collectors.toList()));
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<String> added = videoRepo.insertMissing(LockOrder.keys(ids), LocalDateTime.now()).stream()
+                .map(Video::getId)
+                .toList();
+        evictCache(added);
+        return added;
     }
 
     @Override
@@ -117,26 +125,67 @@ public class VideoServiceImpl implements VideoService {
         videoRepo.save(updatedVideo);
 
         // Evict the cached entry
-        evictCache(video.getId());
+        evictCache(List.of(video.getId()));
         log.debug("Updated video with id {} saved and cache evicted", video.getId());
     }
 
     @Override
     public void updateVideos(List<VideoDTO> videos) {
         log.debug("Updating videos {}", videos);
-        videoRepo.saveAll(videos.stream().map(videoDTO -> new Video(videoDTO.getId(), videoDTO.getTitle(), videoDTO.getDescription(), videoDTO.getThumbnail(), LocalDateTime.now())).collect(Collectors.toList()));
+        if (videos.isEmpty()) {
+            return;
+        }
+        List<VideoDTO> sorted = LockOrder.byKey(videos, VideoDTO::getId);
+        videoRepo.updateInfos(sorted.stream().map(VideoDTO::getId).toArray(String[]::new),
+                sorted.stream().map(VideoDTO::getTitle).toArray(String[]::new),
+                sorted.stream().map(VideoDTO::getDescription).toArray(String[]::new),
+                sorted.stream().map(VideoDTO::getThumbnail).toArray(String[]::new),
+                LocalDateTime.now());
+        evictCache(videos.stream().map(VideoDTO::getId).toList());
+    }
+
+    @Override
+    public void updateUserCountsOfVideos(Map<String, Long> deltas) {
+        log.debug("Updating user counts of videos by {}", deltas);
+        Map<String, Long> changed = LockOrder.byKey(deltas);
+        changed.values().removeIf(delta -> delta == 0);
+        if (changed.isEmpty()) {
+            return;
+        }
+        videoRepo.addUserCounts(changed.keySet().toArray(String[]::new), changed.values().stream().mapToLong(Long::longValue).toArray());
+    }
+
+    @Override
+    public List<String> getUnsavedVideoIdsAfter(String videoId, LocalDateTime updatedBefore, int limit) {
+        log.debug("Getting ids of unsaved videos after {} updated before {} with limit {}", videoId, updatedBefore, limit);
+        return videoRepo.findUnsavedIdsAfter(videoId, updatedBefore, limit);
+    }
+
+    @Override
+    public Set<String> deleteUnsavedVideos(Set<String> videoIds) {
+        log.debug("Deleting unsaved videos {}", videoIds);
+        if (videoIds.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> deleted = new HashSet<>(videoRepo.deleteUnsavedByIdIn(videoIds));
+        evictCache(deleted);
+        return deleted;
     }
 
     @Override
     public void deleteSpecifiedVideos(Set<String> videoIds) {
         log.debug("Deleting videos {}", videoIds);
-        videoRepo.deleteAllById(videoIds);
+        if (videoIds.isEmpty()) {
+            return;
+        }
+        videoRepo.deleteAllByIdIn(videoIds);
+        evictCache(videoIds);
     }
 
 
     @Override
     public VideoDTO toDto(Video e) {
         log.debug("Converting Video entity to DTO for id {}", e.getId());
-        return new VideoDTO(e.getId(), e.getTitle(), e.getDescription(), e.getThumbnail());
+        return new VideoDTO(e.getId(), e.getTitle(), e.getDescription(), e.getThumbnail(), e.getUpdated());
     }
 }
\ No newline at end of file
@@ -1,13 +1,78 @@
 package dev.kuku.youtagserver.video.infrastructure;
 
 import dev.kuku.youtagserver.video.domain.Video;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface VideoRepo extends CrudRepository<Video, String> {
     List<Video> findAllByIdIn(Collection<String> id);
+
+    /**
+     * Update the info of videos in one statement. Videos that were deleted in the meantime are skipped, a null
+     * description keeps the current one and text longer than its column is cut
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE videos v SET title = left(d.title, 250), description = left(coalesce(d.description, v.description), 500), thumbnail_url = left(d.thumbnail_url, 500), updated = :updated
+            FROM unnest(CAST(:ids AS varchar[]), CAST(:titles AS varchar[]), CAST(:descriptions AS varchar[]), CAST(:thumbnailUrls AS varchar[]))
+                AS d(id, title, description, thumbnail_url)
+            WHERE v.id = d.id
+            """)
+    void updateInfos(@Param("ids") String[] ids, @Param("titles") String[] titles, @Param("descriptions") String[] descriptions,
+                     @Param("thumbnailUrls") String[] thumbnailUrls, @Param("updated") LocalDateTime updated);
+
+    /**
+     * Keyset scan of the ids of videos that no user has saved and that were last updated before the given time.
+     * Served by the partial index of unsaved videos
+     */
+    @Query(nativeQuery = true, value = "SELECT id FROM videos WHERE user_count = 0 AND id > :id AND updated < :updatedBefore ORDER BY id LIMIT :limit")
+    List<String> findUnsavedIdsAfter(@Param("id") String id, @Param("updatedBefore") LocalDateTime updatedBefore, @Param("limit") int limit);
+
+    /**
+     * Delete the videos that are still not saved by any user
+     *
+     * @return ids of the videos that were deleted
+     */
+    @Query(nativeQuery = true, value = "DELETE FROM videos WHERE id IN (:ids) AND user_count = 0 RETURNING id")
+    List<String> deleteUnsavedByIdIn(@Param("ids") Collection<String> ids);
+
+    /**
+     * Add deltas[i] to the number of users that saved ids[i]. user_count isn't mapped on {@link Video} so that saving a
+     * video never overwrites it
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE videos v SET user_count = v.user_count + d.delta
+            FROM unnest(CAST(:ids AS varchar[]), CAST(:deltas AS bigint[])) AS d(id, delta)
+            WHERE v.id = d.id
+            """)
+    void addUserCounts(@Param("ids") String[] ids, @Param("deltas") long[] deltas);
+
+    /**
+     * Delete the videos with a single statement. deleteAllById would load and delete every video on its own
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM videos WHERE id IN (:ids)")
+    int deleteAllByIdIn(@Param("ids") Collection<String> ids);
+
+    /**
+     * Add videos with placeholder info in one statement, skipping the ones that exist
+     *
+     * @return the rows that were inserted
+     */
+    @Query(nativeQuery = true, value = """
+            INSERT INTO videos (id, title, description, thumbnail_url, updated)
+            SELECT id, 'NA', 'NA', 'NA', :updated FROM unnest(CAST(:ids AS varchar[])) AS id
+            ON CONFLICT (id) DO NOTHING
+            RETURNING id, title, description, thumbnail_url, updated
+            """)
+    List<Video> insertMissing(@Param("ids") String[] ids, @Param("updated") LocalDateTime updated);
 }
@@ -0,0 +1,17 @@
+package dev.kuku.youtagserver.webscraper.api.dto;
+
+/**
+ * Calls to a source of video info since startup
+ *
+ * @param provider             name of the provider
+ * @param answered             calls that returned the info of the video
+ * @param unanswered           calls where the provider couldn't tell and the next one was asked
+ * @param notFound             calls where youtube said the video doesn't exist
+ * @param failed               calls that failed or timed out
+ * @param skipped              calls that weren't made because the provider kept failing
+ * @param averageLatencyMillis average duration of the calls that were made
+ * @param maxLatencyMillis     longest call
+ */
+public record VideoInfoProviderStats(String provider, long answered, long unanswered, long notFound, long failed, long skipped,
+                                     double averageLatencyMillis, double maxLatencyMillis) {
+}
@@ -1,5 +1,8 @@
 package dev.kuku.youtagserver.webscraper.api.dto;
 
 
+/**
+ * Info of a youtube video. description is null when no provider could get it
+ */
 public record YoutubeVideoInfoDto(String videoID, String title, String description, String thumbnail) {
 }
@@ -0,0 +1,14 @@
+package dev.kuku.youtagserver.webscraper.api.dto;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Outcome of fetching the info of several videos
+ *
+ * @param videoInfos          info of the videos that were fetched
+ * @param invalidVideoIds     videos that youtube doesn't know
+ * @param unavailableVideoIds videos that couldn't be fetched in time or because of a network error. They may be valid
+ */
+public record YoutubeVideoInfos(List<YoutubeVideoInfoDto> videoInfos, Set<String> invalidVideoIds, Set<String> unavailableVideoIds) {
+}
@@ -0,0 +1,13 @@
+package dev.kuku.youtagserver.webscraper.api.exceptions;
+
+import dev.kuku.youtagserver.shared.exceptions.ResponseException;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Youtube couldn't be reached or is throttling us. Unlike {@link InvalidVideoId} it says nothing about the video
+ */
+public class ScraperUnavailable extends ResponseException {
+    public ScraperUnavailable(String videoID, String reason) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, String.format("Couldn't get info of video %s: %s", videoID, reason));
+    }
+}
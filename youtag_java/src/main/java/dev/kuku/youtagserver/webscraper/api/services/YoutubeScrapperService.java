@@ -1,8 +1,36 @@
 package dev.kuku.youtagserver.webscraper.api.services;
 
+import dev.kuku.youtagserver.webscraper.api.dto.VideoInfoProviderStats;
 import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfos;
 import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import dev.kuku.youtagserver.webscraper.api.exceptions.ScraperUnavailable;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface YoutubeScrapperService {
-    YoutubeVideoInfoDto getYoutubeVideoInfo(String videoId) throws InvalidVideoId;
+    /**
+     * Fetch the info of a video
+     *
+     * @throws InvalidVideoId      if youtube says the video doesn't exist
+     * @throws ScraperUnavailable if youtube couldn't be reached or kept failing
+     */
+    YoutubeVideoInfoDto getYoutubeVideoInfo(String videoId) throws InvalidVideoId, ScraperUnavailable;
+
+    /**
+     * Fetch the info of several videos concurrently. Takes about as long as the slowest fetch instead of the sum
+     * of all of them
+     *
+     * @param videoIds videos to fetch
+     * @return info of the videos that were fetched and the ids of the ones that weren't
+     */
+    YoutubeVideoInfos getYoutubeVideoInfos(Collection<String> videoIds);
+
+    /**
+     * Get the calls to each source of video info since startup, in the order they are asked
+     *
+     * @return stats of each provider
+     */
+    List<VideoInfoProviderStats> getProviderStats();
 }
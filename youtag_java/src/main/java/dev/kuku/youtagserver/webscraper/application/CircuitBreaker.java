@@ -0,0 +1,76 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling an upstream that keeps failing. After failureThreshold failures in a row the breaker opens and calls
+ * are refused for openDuration. Then a single trial call is let through: its success closes the breaker and its
+ * failure opens it again.
+ */
+final class CircuitBreaker {
+    enum State {CLOSED, OPEN, HALF_OPEN}
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier ticker;
+    // Guarded by this
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    CircuitBreaker(int failureThreshold, Duration openDuration) {
+        this(failureThreshold, openDuration, System::nanoTime);
+    }
+
+    CircuitBreaker(int failureThreshold, Duration openDuration, LongSupplier ticker) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.ticker = ticker;
+    }
+
+    /**
+     * @return true if the call may go ahead. Its outcome must then be reported with {@link #onSuccess} or
+     * {@link #onFailure}, or {@link #onCancel} if it wasn't made after all
+     */
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN && ticker.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> false;
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    yield false;
+                }
+                trialInFlight = true;
+                yield true;
+            }
+        };
+    }
+
+    synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        trialInFlight = false;
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = ticker.getAsLong();
+        }
+    }
+
+    synchronized void onCancel() {
+        trialInFlight = false;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
@@ -0,0 +1,76 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.parser.StreamParser;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads the info of a video from the head of its watch page. Heavier than {@link OEmbedProvider}, but it is the only
+ * provider with the description and the only one that can tell that a video doesn't exist
+ */
+@Slf4j
+@Component
+class HtmlPageProvider implements VideoInfoProvider {
+    static final String NAME = "html";
+    static final String WATCH_URL = "https://www.youtube.com/watch?v=";
+    /**
+     * Most bytes of a page that are read. The metadata is at the start of the head, well within it
+     */
+    static final int MAX_PAGE_BYTES = 512 * 1024;
+    private final String watchUrl;
+
+    HtmlPageProvider() {
+        this(WATCH_URL);
+    }
+
+    HtmlPageProvider(String watchUrl) {
+        this.watchUrl = watchUrl;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public YoutubeVideoInfoDto fetch(String videoId) throws IOException, InvalidVideoId {
+        PageHead head;
+        try (StreamParser parser = Jsoup.connect(watchUrl + videoId)
+                .timeout((int) YoutubeScrapperServiceImpl.FETCH_TIMEOUT.toMillis())
+                .maxBodySize(MAX_PAGE_BYTES)
+                .execute()
+                .streamParser()) {
+            head = PageHead.read(parser);
+        } catch (HttpStatusException e) {
+            if (isMissing(e.getStatusCode())) {
+                log.error("Video {} not found with status {}", videoId, e.getStatusCode());
+                throw new InvalidVideoId(videoId);
+            }
+            throw e;
+        }
+        if (head.title().isEmpty()) {
+            log.warn("No title in the first {} bytes of the page of video {}", MAX_PAGE_BYTES, videoId);
+        }
+
+        // Remove the "- YouTube" suffix of the title if present
+        String title = head.title();
+        if (title.endsWith(" - YouTube")) {
+            title = title.substring(0, title.length() - 10);
+        }
+
+        return new YoutubeVideoInfoDto(videoId, title, head.description(), head.image());
+    }
+
+    /**
+     * Statuses that mean the video doesn't exist. Other 4xx, like 429, mean youtube doesn't want to answer right now
+     */
+    private static boolean isMissing(int statusCode) {
+        return statusCode == 400 || statusCode == 404 || statusCode == 410;
+    }
+}
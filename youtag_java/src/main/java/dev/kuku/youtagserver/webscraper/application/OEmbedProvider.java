@@ -0,0 +1,63 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the title and thumbnail of a video from youtube's oEmbed endpoint, a JSON document of a few hundred bytes.
+ * oEmbed has no description, so its answer is partial.
+ * <p>
+ * Missing, private and unembeddable videos are all refused alike, so for those the next provider is asked
+ */
+@Component
+class OEmbedProvider implements VideoInfoProvider {
+    static final String NAME = "oembed";
+    static final String OEMBED_URL = "https://www.youtube.com/oembed?format=json&url=";
+    static final int MAX_RESPONSE_BYTES = 64 * 1024;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private final String oEmbedUrl;
+    private final String watchUrl;
+
+    OEmbedProvider() {
+        this(OEMBED_URL, HtmlPageProvider.WATCH_URL);
+    }
+
+    OEmbedProvider(String oEmbedUrl, String watchUrl) {
+        this.oEmbedUrl = oEmbedUrl;
+        this.watchUrl = watchUrl;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public YoutubeVideoInfoDto fetch(String videoId) throws IOException {
+        JsonNode json;
+        try (InputStream body = Jsoup.connect(oEmbedUrl + URLEncoder.encode(watchUrl + videoId, StandardCharsets.UTF_8))
+                .ignoreContentType(true)
+                .timeout((int) YoutubeScrapperServiceImpl.FETCH_TIMEOUT.toMillis())
+                .maxBodySize(MAX_RESPONSE_BYTES)
+                .execute()
+                .bodyStream()) {
+            json = objectMapper.readTree(body);
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value() || e.getStatusCode() >= 500) {
+                throw e;
+            }
+            return null;
+        }
+        return new YoutubeVideoInfoDto(videoId, json.path("title").asText(""), null, json.path("thumbnail_url").asText(""));
+    }
+}
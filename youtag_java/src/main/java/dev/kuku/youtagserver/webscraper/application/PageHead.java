@@ -0,0 +1,56 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.StreamParser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+
+/**
+ * Title, description and image of a page, read from its head while it streams in.
+ * <p>
+ * A youtube watch page is over a megabyte, mostly inline script in the body. Reading stops once the three values are
+ * found or the head ends, so the rest of the page is neither downloaded nor parsed. Values that are missing are empty.
+ */
+record PageHead(String title, String description, String image) {
+
+    static PageHead read(StreamParser parser) throws IOException {
+        String title = null;
+        String description = null;
+        String image = null;
+        try {
+            Iterator<Element> elements = parser.iterator();
+            while (elements.hasNext() && (title == null || description == null || image == null)) {
+                //Elements are emitted when they close, so the head comes after everything in it
+                Element element = elements.next();
+                switch (element.normalName()) {
+                    case "title" -> title = title == null ? element.text() : title;
+                    case "meta" -> {
+                        if (description == null && element.attr("name").equals("description")) {
+                            description = element.attr("content");
+                        } else if (image == null && element.attr("property").equals("og:image")) {
+                            image = element.attr("content");
+                        }
+                    }
+                    case "head", "body" -> {
+                        return new PageHead(orEmpty(title), orEmpty(description), orEmpty(image));
+                    }
+                    default -> {
+                    }
+                }
+                //Drop what has been read, like large inline scripts, from the document
+                element.remove();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            parser.stop();
+        }
+        return new PageHead(orEmpty(title), orEmpty(description), orEmpty(image));
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
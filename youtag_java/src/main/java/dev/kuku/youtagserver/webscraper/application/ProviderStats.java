@@ -0,0 +1,66 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import dev.kuku.youtagserver.webscraper.api.dto.VideoInfoProviderStats;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the calls to a {@link VideoInfoProvider}. Updated by concurrent fetches without locking
+ */
+final class ProviderStats {
+    private final String provider;
+    private final LongAdder answered = new LongAdder();
+    private final LongAdder unanswered = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+    ProviderStats(String provider) {
+        this.provider = provider;
+    }
+
+    void onAnswered(long nanos) {
+        answered.increment();
+        onCall(nanos);
+    }
+
+    void onUnanswered(long nanos) {
+        unanswered.increment();
+        onCall(nanos);
+    }
+
+    void onNotFound(long nanos) {
+        notFound.increment();
+        onCall(nanos);
+    }
+
+    void onFailed(long nanos) {
+        failed.increment();
+        onCall(nanos);
+    }
+
+    /**
+     * The provider wasn't called because its circuit breaker was open
+     */
+    void onSkipped() {
+        skipped.increment();
+    }
+
+    VideoInfoProviderStats snapshot() {
+        long answered = this.answered.sum();
+        long unanswered = this.unanswered.sum();
+        long notFound = this.notFound.sum();
+        long failed = this.failed.sum();
+        long calls = answered + unanswered + notFound + failed;
+        double averageLatencyMillis = calls == 0 ? 0 : latencyNanos.sum() / 1e6 / calls;
+        return new VideoInfoProviderStats(provider, answered, unanswered, notFound, failed, skipped.sum(), averageLatencyMillis, maxLatencyNanos.get() / 1e6);
+    }
+
+    private void onCall(long nanos) {
+        latencyNanos.add(nanos);
+        maxLatencyNanos.accumulate(nanos);
+    }
+}
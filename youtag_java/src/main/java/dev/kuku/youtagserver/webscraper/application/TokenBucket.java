@@ -0,0 +1,65 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter. Tokens are added at a steady rate up to the burst size and every request takes one.
+ * A request that finds the bucket empty reserves the next token and waits for it, so waiting requests are served in
+ * the order they arrived.
+ */
+final class TokenBucket {
+    private final double tokensPerNano;
+    private final double burst;
+    private final LongSupplier ticker;
+    // Guarded by this. Negative while tokens are reserved by waiting requests
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double tokensPerSecond, int burst) {
+        this(tokensPerSecond, burst, System::nanoTime);
+    }
+
+    TokenBucket(double tokensPerSecond, int burst, LongSupplier ticker) {
+        this.tokensPerNano = tokensPerSecond / 1e9;
+        this.burst = burst;
+        this.ticker = ticker;
+        this.tokens = burst;
+        this.refilledAt = ticker.getAsLong();
+    }
+
+    /**
+     * Take a token, waiting at most maxWait for it
+     *
+     * @return false if the token wouldn't be available in time. Nothing is taken then
+     */
+    boolean tryAcquire(Duration maxWait) throws InterruptedException {
+        long waitNanos = reserve(maxWait.toNanos());
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            Thread.sleep(Duration.ofNanos(waitNanos));
+        }
+        return true;
+    }
+
+    /**
+     * @return nanos to wait for the reserved token, or -1 if it would take longer than maxWaitNanos
+     */
+    synchronized long reserve(long maxWaitNanos) {
+        long now = ticker.getAsLong();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        long waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        tokens--;
+        return waitNanos;
+    }
+}
@@ -0,0 +1,27 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+
+import java.io.IOException;
+
+/**
+ * A source of the info of youtube videos. {@link YoutubeScrapperServiceImpl} asks the providers in the order set by
+ * {@code youtag.scraper.providers} until one of them answers, and takes care of rate limiting and retries
+ */
+public interface VideoInfoProvider {
+    /**
+     * @return name of the provider in the configuration and in the stats
+     */
+    String name();
+
+    /**
+     * Fetch the info of a video
+     *
+     * @return info of the video, or null if this provider can't tell so the next one is asked. A null description makes
+     * the answer partial
+     * @throws InvalidVideoId if youtube says the video doesn't exist
+     * @throws IOException    if youtube couldn't be reached or failed. Counts against the circuit breaker of the provider
+     */
+    YoutubeVideoInfoDto fetch(String videoId) throws IOException, InvalidVideoId;
+}
@@ -1,46 +1,350 @@
 package dev.kuku.youtagserver.webscraper.application;
 
+import dev.kuku.youtagserver.shared.helper.BoundedCache;
+import dev.kuku.youtagserver.webscraper.api.dto.VideoInfoProviderStats;
 import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfos;
 import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import dev.kuku.youtagserver.webscraper.api.exceptions.ScraperUnavailable;
 import dev.kuku.youtagserver.webscraper.api.services.YoutubeScrapperService;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
+import org.jsoup.HttpStatusException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
+/**
+ * Gets the info of videos from a chain of {@link VideoInfoProvider}s, asked in the order of
+ * {@code youtag.scraper.providers} until one answers. An answer without a description is used as it is, unless
+ * {@code youtag.scraper.fill-in-description} is set: then the next providers are asked for the description too, at the
+ * cost of another request per video, and the partial answer is used if none of them has it.
+ * <p>
+ * Youtube is protected from us and we from it: requests of all providers share a {@link TokenBucket}, failed requests
+ * are retried with jittered exponential backoff, and each provider has a {@link CircuitBreaker} that skips it for a
+ * while once it keeps failing. Only a page that youtube says doesn't exist makes a video invalid. Everything else is
+ * reported as {@link ScraperUnavailable} so that valid videos aren't deleted because youtube was slow.
+ * <p>
+ * Concurrent requests for the same video share a single fetch and its outcome, and fetched info is kept for
+ * {@link #RECENT_INFO_TIME_TO_LIVE}, so a video that many users save at once is fetched once.
+ */
 @Slf4j
 @Service
 public class YoutubeScrapperServiceImpl implements YoutubeScrapperService {
+    /**
+     * Pages fetched at the same time, so a large order doesn't flood youtube
+     */
+    static final int MAX_CONCURRENT_FETCHES = 16;
+    /**
+     * Connect and read timeout of a single request
+     */
+    static final Duration FETCH_TIMEOUT = Duration.ofSeconds(10);
+    static final double REQUESTS_PER_SECOND = 10;
+    static final int REQUEST_BURST = 20;
+    /**
+     * Attempts of the whole chain, including the first one
+     */
+    static final int MAX_ATTEMPTS = 3;
+    static final Duration RETRY_BACKOFF = Duration.ofMillis(500);
+    static final Duration MAX_RETRY_BACKOFF = Duration.ofSeconds(5);
+    /**
+     * Failed requests in a row that open the circuit breaker of a provider, and how long it stays open
+     */
+    static final int FAILURE_THRESHOLD = 5;
+    static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+    static final int RECENT_INFO_CAPACITY = 10_000;
+    static final Duration RECENT_INFO_TIME_TO_LIVE = Duration.ofMinutes(1);
+    private final List<ChainedProvider> chain;
+    private final TokenBucket rateLimiter;
+    private final Duration retryBackoff;
+    private final boolean fillInDescription;
+    /**
+     * Longest a single video can take: every attempt may wait for the rate limiter and time out at each provider
+     */
+    private final Duration fetchBudget;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore fetchPermits = new Semaphore(MAX_CONCURRENT_FETCHES);
+    private final ConcurrentHashMap<String, CompletableFuture<YoutubeVideoInfoDto>> inFlight = new ConcurrentHashMap<>();
+    private final BoundedCache<String, YoutubeVideoInfoDto> recentInfos = new BoundedCache<>(RECENT_INFO_CAPACITY, RECENT_INFO_TIME_TO_LIVE.toNanos(), null);
+
+    /**
+     * A provider with its own circuit breaker and stats
+     */
+    private record ChainedProvider(VideoInfoProvider provider, CircuitBreaker circuitBreaker, ProviderStats stats) {
+    }
+
+    @Autowired
+    public YoutubeScrapperServiceImpl(List<VideoInfoProvider> providers,
+                                      @Value("${youtag.scraper.providers:oembed,html}") List<String> order,
+                                      @Value("${youtag.scraper.fill-in-description:false}") boolean fillInDescription) {
+        this(inOrder(providers, order), new TokenBucket(REQUESTS_PER_SECOND, REQUEST_BURST), () -> new CircuitBreaker(FAILURE_THRESHOLD, OPEN_DURATION), RETRY_BACKOFF, fillInDescription);
+    }
+
+    YoutubeScrapperServiceImpl(List<VideoInfoProvider> chain, TokenBucket rateLimiter, Supplier<CircuitBreaker> circuitBreakers, Duration retryBackoff, boolean fillInDescription) {
+        this.chain = chain.stream().map(provider -> new ChainedProvider(provider, circuitBreakers.get(), new ProviderStats(provider.name()))).toList();
+        this.rateLimiter = rateLimiter;
+        this.retryBackoff = retryBackoff;
+        this.fillInDescription = fillInDescription;
+        this.fetchBudget = FETCH_TIMEOUT.multipliedBy(2L * MAX_ATTEMPTS * chain.size()).plus(MAX_RETRY_BACKOFF.multipliedBy(MAX_ATTEMPTS - 1));
+        log.info("Video info providers in order {}", chain.stream().map(VideoInfoProvider::name).toList());
+    }
+
+    /**
+     * Pick the providers named in order
+     *
+     * @throws IllegalStateException if a name is unknown or none is given, so a typo fails at startup
+     */
+    static List<VideoInfoProvider> inOrder(List<VideoInfoProvider> providers, List<String> order) {
+        Map<String, VideoInfoProvider> byName = new LinkedHashMap<>();
+        providers.forEach(provider -> byName.put(provider.name(), provider));
+        List<VideoInfoProvider> chain = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(order)) {
+            VideoInfoProvider provider = byName.get(name.strip());
+            if (provider == null) {
+                throw new IllegalStateException(String.format("Unknown video info provider %s. Known providers are %s", name, byName.keySet()));
+            }
+            chain.add(provider);
+        }
+        if (chain.isEmpty()) {
+            throw new IllegalStateException("No video info provider configured");
+        }
+        return chain;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
 
     @Override
-    public YoutubeVideoInfoDto getYoutubeVideoInfo(String videoId) throws InvalidVideoId {
-        String url = generateUrl(videoId);
+    public YoutubeVideoInfoDto getYoutubeVideoInfo(String videoId) throws InvalidVideoId, ScraperUnavailable {
+        YoutubeVideoInfoDto recent = recentInfos.get(videoId);
+        if (recent != null) {
+            return recent;
+        }
+        CompletableFuture<YoutubeVideoInfoDto> flight = new CompletableFuture<>();
+        CompletableFuture<YoutubeVideoInfoDto> existing = inFlight.putIfAbsent(videoId, flight);
+        if (existing != null) {
+            log.debug("Joining fetch of video {} in flight", videoId);
+            return join(videoId, existing);
+        }
         try {
-            Document page = Jsoup.connect(url).get();
+            YoutubeVideoInfoDto info = fetchFromChain(videoId);
+            //Cached before the flight lands so that later requests find one or the other
+            recentInfos.put(videoId, info);
+            flight.complete(info);
+            return info;
+        } catch (Throwable e) {
+            //Whatever happens the flight must land, or the requests that joined it would wait for nothing
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(videoId, flight);
+        }
+    }
+
+    /**
+     * Wait for the fetch of another request, at most as long as a fetch may take
+     */
+    private YoutubeVideoInfoDto join(String videoId, CompletableFuture<YoutubeVideoInfoDto> flight) throws InvalidVideoId, ScraperUnavailable {
+        try {
+            return flight.get(fetchBudget.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ScraperUnavailable(videoId, "timed out waiting for the fetch of another request");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScraperUnavailable(videoId, "interrupted");
+        } catch (ExecutionException e) {
+            switch (e.getCause()) {
+                case InvalidVideoId invalidVideoId -> throw invalidVideoId;
+                case ScraperUnavailable scraperUnavailable -> throw scraperUnavailable;
+                case RuntimeException runtimeException -> throw runtimeException;
+                default -> throw new ScraperUnavailable(videoId, e.getCause().toString());
+            }
+        }
+    }
 
-            // Extract the title and remove the "- YouTube" suffix if present
-            String title = page.title();
-            if (title.endsWith(" - YouTube")) {
-                title = title.substring(0, title.length() - 10);
+    private YoutubeVideoInfoDto fetchFromChain(String videoId) throws InvalidVideoId, ScraperUnavailable {
+        YoutubeVideoInfoDto partial = null;
+        for (int attempt = 1; ; attempt++) {
+            String failure = null;
+            boolean called = false;
+            for (ChainedProvider link : chain) {
+                if (!link.circuitBreaker().tryAcquire()) {
+                    link.stats().onSkipped();
+                    continue;
+                }
+                acquireRequest(videoId, link.circuitBreaker());
+                called = true;
+                long start = System.nanoTime();
+                try {
+                    YoutubeVideoInfoDto info = link.provider().fetch(videoId);
+                    link.circuitBreaker().onSuccess();
+                    if (info == null) {
+                        link.stats().onUnanswered(System.nanoTime() - start);
+                        continue;
+                    }
+                    link.stats().onAnswered(System.nanoTime() - start);
+                    info = partial == null ? info : fillIn(partial, info);
+                    if (info.description() != null || !fillInDescription) {
+                        return info;
+                    }
+                    partial = info;
+                } catch (InvalidVideoId e) {
+                    //Youtube answered, so it is healthy
+                    link.circuitBreaker().onSuccess();
+                    link.stats().onNotFound(System.nanoTime() - start);
+                    if (partial != null) {
+                        log.warn("Video {} not found by {} although an earlier provider has it", videoId, link.provider().name());
+                        return partial;
+                    }
+                    throw e;
+                } catch (IOException | RuntimeException e) {
+                    //A provider bug, like a url jsoup refuses, counts as a failure so a half open breaker isn't left waiting
+                    link.circuitBreaker().onFailure();
+                    link.stats().onFailed(System.nanoTime() - start);
+                    failure = link.provider().name() + " " + (e instanceof HttpStatusException statusException ? "status " + statusException.getStatusCode() : e.toString());
+                    log.error("Failed to load video {} on attempt {} with error {}", videoId, attempt, failure);
+                } catch (Error e) {
+                    link.circuitBreaker().onCancel();
+                    throw e;
+                }
             }
+            if (partial != null) {
+                return partial;
+            }
+            if (!called) {
+                throw new ScraperUnavailable(videoId, "youtube is failing");
+            }
+            if (failure == null) {
+                throw new ScraperUnavailable(videoId, "no provider has the info of the video");
+            }
+            if (attempt == MAX_ATTEMPTS) {
+                throw new ScraperUnavailable(videoId, failure);
+            }
+            try {
+                Thread.sleep(backoff(attempt));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ScraperUnavailable(videoId, "interrupted");
+            }
+        }
+    }
+
+    /**
+     * Fill the fields that a partial answer is missing from a later one
+     */
+    private static YoutubeVideoInfoDto fillIn(YoutubeVideoInfoDto partial, YoutubeVideoInfoDto later) {
+        return new YoutubeVideoInfoDto(partial.videoID(), partial.title(), later.description(), partial.thumbnail());
+    }
+
+    @Override
+    public YoutubeVideoInfos getYoutubeVideoInfos(Collection<String> videoIds) {
+        log.debug("Fetching info of videos {}", videoIds);
+        Set<String> ids = new LinkedHashSet<>(videoIds);
+        Set<String> invalidVideoIds = ConcurrentHashMap.newKeySet();
+        Set<String> unavailableVideoIds = ConcurrentHashMap.newKeySet();
+        Map<String, Future<YoutubeVideoInfoDto>> fetches = new LinkedHashMap<>();
+        for (String id : ids) {
+            fetches.put(id, executor.submit(() -> fetchWithPermit(id, invalidVideoIds, unavailableVideoIds)));
+        }
+        //Every fetch is bounded by its own timeouts. This only guards against a fetch that hangs regardless
+        long rounds = (ids.size() + MAX_CONCURRENT_FETCHES - 1) / MAX_CONCURRENT_FETCHES;
+        long deadline = System.nanoTime() + fetchBudget.multipliedBy(rounds + 1).toNanos();
+        List<YoutubeVideoInfoDto> videoInfos = new ArrayList<>();
+        fetches.forEach((id, fetch) -> {
+            try {
+                YoutubeVideoInfoDto info = fetch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (info != null) {
+                    videoInfos.add(info);
+                }
+            } catch (ExecutionException e) {
+                log.error("Failed to load video {} with error {}", id, e.getCause().toString());
+                unavailableVideoIds.add(id);
+            } catch (TimeoutException e) {
+                log.error("Timed out loading video {}", id);
+                fetch.cancel(true);
+                unavailableVideoIds.add(id);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fetch.cancel(true);
+                unavailableVideoIds.add(id);
+            }
+        });
+        log.debug("Fetched {} videos, {} invalid and {} unavailable. Providers {}", videoInfos.size(), invalidVideoIds.size(), unavailableVideoIds.size(), getProviderStats());
+        return new YoutubeVideoInfos(videoInfos, Set.copyOf(invalidVideoIds), Set.copyOf(unavailableVideoIds));
+    }
 
-            // Extract the description
-            String description = page.select("meta[name=description]").attr("content");
+    @Override
+    public List<VideoInfoProviderStats> getProviderStats() {
+        return chain.stream().map(link -> link.stats().snapshot()).toList();
+    }
 
-            // Extract the thumbnail URL
-            String thumbnailUrl = page.select("meta[property=og:image]").attr("content");
+    CircuitBreaker.State circuitState(String provider) {
+        return chain.stream().filter(link -> link.provider().name().equals(provider)).findFirst().orElseThrow().circuitBreaker().state();
+    }
 
-            return new YoutubeVideoInfoDto(videoId, title, description, thumbnailUrl);
+    /**
+     * Wait for the rate limiter before calling a provider whose circuit breaker let the call through
+     */
+    private void acquireRequest(String videoId, CircuitBreaker circuitBreaker) throws ScraperUnavailable {
+        try {
+            if (rateLimiter.tryAcquire(FETCH_TIMEOUT)) {
+                return;
+            }
+            circuitBreaker.onCancel();
+            throw new ScraperUnavailable(videoId, "too many requests to youtube");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.onCancel();
+            throw new ScraperUnavailable(videoId, "interrupted");
+        }
+    }
 
-        } catch (IOException e) {
-            log.error("Failed to load video {} with error {}", videoId, e.getMessage());
+    /**
+     * @return info of the video, or null if it was added to invalidVideoIds or unavailableVideoIds instead
+     */
+    private YoutubeVideoInfoDto fetchWithPermit(String videoId, Set<String> invalidVideoIds, Set<String> unavailableVideoIds) throws InterruptedException {
+        fetchPermits.acquire();
+        try {
+            return getYoutubeVideoInfo(videoId);
+        } catch (InvalidVideoId e) {
+            invalidVideoIds.add(videoId);
+        } catch (ScraperUnavailable e) {
+            unavailableVideoIds.add(videoId);
+        } finally {
+            fetchPermits.release();
         }
-        throw new InvalidVideoId(videoId);
+        return null;
     }
 
-    private String generateUrl(String videoId) {
-        return "https://www.youtube.com/watch?v=" + videoId;
+    /**
+     * Exponential backoff with equal jitter, so retries of many fetches that failed together don't arrive together
+     */
+    private Duration backoff(int attempt) {
+        long capNanos = Math.min(MAX_RETRY_BACKOFF.toNanos(), retryBackoff.toNanos() << (attempt - 1));
+        long halfNanos = Math.max(1, capNanos / 2);
+        return Duration.ofNanos(halfNanos + ThreadLocalRandom.current().nextLong(halfNanos));
     }
 }
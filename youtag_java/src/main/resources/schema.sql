@@ -12,6 +12,12 @@ create table if not exists event_publication
                                       serialized_event text
                                       );
 
+/*
+ Trigram matching for tag autocomplete. btree_gin lets user_id share the trigram index
+ */
+create extension if not exists pg_trgm;
+create extension if not exists btree_gin;
+
 /*
  Holds user info
  */
@@ -36,6 +42,18 @@ create table if not exists videos
     updated       TIMESTAMP(6) NOT NULL
     );
 
+/*
+ Full text search document of video. Title words rank above description words.
+ Generated by postgres so it follows every write of title and description
+ */
+alter table videos add column if not exists search_vector tsvector
+    generated always as (setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+                         setweight(to_tsvector('english', coalesce(description, '')), 'B')) stored;
+/*
+ Full text search of videos
+ */
+create index if not exists idx_videos_search on videos using gin(search_vector);
+
 /*
  Holds which video is saved for which user
  */
@@ -43,9 +61,15 @@ create table if not exists user_video
 (
     user_id  VARCHAR(250) NOT NULL,
     video_id VARCHAR(50)  NOT NULL,
+    saved_at TIMESTAMP(6) NOT NULL DEFAULT now(),
     primary key (user_id, video_id)
     );
 
+/*
+ Tables created before saved_at existed
+ */
+alter table user_video add column if not exists saved_at TIMESTAMP(6) NOT NULL DEFAULT now();
+
 /*
  Get/Delete video of user
  */
@@ -58,6 +82,28 @@ create index if not exists idx_user_video_user on user_video(user_id);
  Get/Delete unused videos
  */
 create index if not exists idx_user_video_video on user_video(video_id);
+/*
+ Keyset pagination of saved videos of user, newest first
+ */
+create index if not exists idx_user_video_user_saved on user_video(user_id, saved_at desc, video_id desc);
+
+/*
+ Number of saved videos of each user. Kept up to date by the writes on user_video
+ */
+create table if not exists user_video_count
+(
+    user_id     VARCHAR(250) PRIMARY KEY,
+    video_count BIGINT NOT NULL DEFAULT 0
+    );
+
+/*
+ Fill the counters once for databases created before they existed
+ */
+insert into user_video_count (user_id, video_count)
+select user_id, count(*)
+from user_video
+where not exists (select 1 from user_video_count)
+group by user_id;
 
 /*
  Holds which users have which userTag
@@ -81,6 +127,32 @@ create index if not exists idx_user_tag_user_tag on user_tag(user_id, tag);
  Get/Delete tags of all users
  */
 create index if not exists idx_user_tag_tag on user_tag(tag);
+/*
+ Autocomplete of tags of user. Trigrams serve infix matches of 3 or more characters
+ */
+create index if not exists idx_user_tag_user_tag_trgm on user_tag using gin (user_id, tag gin_trgm_ops);
+/*
+ Autocomplete of tags of user. Serves prefix matches of shorter keywords which have no trigrams
+ */
+create index if not exists idx_user_tag_user_tag_prefix on user_tag(user_id, tag text_pattern_ops);
+
+/*
+ Number of tags of each user. Kept up to date by the writes on user_tag
+ */
+create table if not exists user_tag_count
+(
+    user_id   VARCHAR(255) PRIMARY KEY,
+    tag_count BIGINT NOT NULL DEFAULT 0
+    );
+
+/*
+ Fill the counters once for databases created before they existed
+ */
+insert into user_tag_count (user_id, tag_count)
+select user_id, count(*)
+from user_tag
+where not exists (select 1 from user_tag_count)
+group by user_id;
 
 /*
  Holds which user's video has which userTag
@@ -103,4 +175,118 @@ create index if not exists idx_user_video_tag_user_video_tag on user_video_tag(u
 /*
  get videos using the tag
  */
-create index if not exists idx_user_video_tag_user_tag on user_video_tag(user_id, tag);
\ No newline at end of file
+create index if not exists idx_user_video_tag_user_tag on user_video_tag(user_id, tag);
+
+/*
+ Number of saved videos of the user that have the tag. Kept up to date by the writes on user_video_tag.
+ Rows created before the column existed are null until they are counted below
+ */
+alter table user_tag add column if not exists video_count BIGINT;
+update user_tag ut
+set video_count = (select count(*) from user_video_tag uvt where uvt.user_id = ut.user_id and uvt.tag = ut.tag)
+where ut.video_count is null;
+alter table user_tag alter column video_count set default 0;
+
+/*
+ Tags of users that no video uses anymore, for the orphan collector
+ */
+create index if not exists idx_user_tag_unused on user_tag(user_id, tag) where video_count = 0;
+
+/*
+ When the tag was last added to the user. Tags are added before they are put on a video, so the orphan collector
+ leaves younger unused tags alone
+ */
+alter table user_tag add column if not exists updated TIMESTAMP(6) NOT NULL DEFAULT now();
+
+/*
+ Number of users that saved the video. Kept up to date by the writes on user_video.
+ Rows created before the column existed are null until they are counted below
+ */
+alter table videos add column if not exists user_count BIGINT;
+update videos v
+set user_count = (select count(*) from user_video uv where uv.video_id = v.id)
+where v.user_count is null;
+alter table videos alter column user_count set default 0;
+
+/*
+ Videos that no user has saved, for the orphan collector
+ */
+create index if not exists idx_videos_unsaved on videos(id) where user_count = 0;
+
+/*
+ Number of users that gave the video the tag. Kept up to date by the writes on user_video_tag
+ */
+create table if not exists video_tag_stat
+(
+    video_id   VARCHAR(255) NOT NULL,
+    tag        VARCHAR(255) NOT NULL,
+    user_count BIGINT       NOT NULL DEFAULT 0,
+    primary key (video_id, tag)
+    );
+
+/*
+ Fill the stats once for databases created before they existed
+ */
+insert into video_tag_stat (video_id, tag, user_count)
+select video_id, tag, count(*)
+from user_video_tag
+where not exists (select 1 from video_tag_stat)
+group by video_id, tag;
+
+/*
+ Number of saved videos, across all users, that have both tags. Every pair is stored in both directions.
+ Kept up to date by the writes on user_video_tag
+ */
+create table if not exists tag_cooccurrence
+(
+    tag         VARCHAR(255) NOT NULL,
+    other_tag   VARCHAR(255) NOT NULL,
+    video_count BIGINT       NOT NULL DEFAULT 0,
+    primary key (tag, other_tag)
+    );
+
+/*
+ Most frequent co-occurring tags of a tag
+ */
+create index if not exists idx_tag_cooccurrence_tag_count on tag_cooccurrence(tag, video_count desc);
+
+/*
+ Fill the pairs once for databases created before they existed
+ */
+insert into tag_cooccurrence (tag, other_tag, video_count)
+select a.tag, b.tag, count(*)
+from user_video_tag a
+         join user_video_tag b on b.user_id = a.user_id and b.video_id = a.video_id and b.tag <> a.tag
+where not exists (select 1 from tag_cooccurrence)
+group by a.tag, b.tag;
+
+/*
+ Where each scan of the orphan collector stopped
+ */
+create table if not exists collector_checkpoint
+(
+    scan          VARCHAR(50)  PRIMARY KEY,
+    after_key     VARCHAR(255) NOT NULL DEFAULT '',
+    after_sub_key VARCHAR(255) NOT NULL DEFAULT '',
+    updated       TIMESTAMP(6) NOT NULL DEFAULT now()
+    );
+
+insert into collector_checkpoint (scan)
+values ('user_tag'), ('videos')
+on conflict (scan) do nothing;
+
+/*
+ Progress of deleting the data of deleted users
+ */
+create table if not exists account_deletion
+(
+    user_id            VARCHAR(250) PRIMARY KEY,
+    phase              VARCHAR(20)  NOT NULL,
+    total_videos       BIGINT       NOT NULL DEFAULT 0,
+    total_tags         BIGINT       NOT NULL DEFAULT 0,
+    deleted_video_tags BIGINT       NOT NULL DEFAULT 0,
+    deleted_videos     BIGINT       NOT NULL DEFAULT 0,
+    deleted_tags       BIGINT       NOT NULL DEFAULT 0,
+    started            TIMESTAMP(6) NOT NULL,
+    updated            TIMESTAMP(6) NOT NULL
+    );
@@ -0,0 +1,184 @@
+package dev.kuku.youtagserver.shared.application;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.kuku.youtagserver.shared.exceptions.InvalidImport;
+import dev.kuku.youtagserver.shared.helper.CacheSystem;
+import dev.kuku.youtagserver.shared.models.ImportProgress;
+import dev.kuku.youtagserver.user_tag.api.UserTagService;
+import dev.kuku.youtagserver.user_video.api.UserVideoService;
+import dev.kuku.youtagserver.user_video_tag.api.UserVideoTagService;
+import dev.kuku.youtagserver.video.api.services.VideoService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryImportServiceTest {
+    @Mock
+    VideoService videoService;
+    @Mock
+    UserVideoService userVideoService;
+    @Mock
+    UserTagService userTagService;
+    @Mock
+    UserVideoTagService userVideoTagService;
+    @Mock
+    ApplicationEventPublisher eventPublisher;
+    @Mock
+    TransactionTemplate transactionTemplate;
+    @Mock
+    CacheSystem cacheSystem;
+    LibraryImportService service;
+    /**
+     * Tags of each video in the order the batches were written
+     */
+    final Map<String, Set<String>> written = new LinkedHashMap<>();
+
+    @BeforeEach
+    void setup() {
+        service = new LibraryImportService(videoService, userVideoService, userTagService, userVideoTagService,
+                eventPublisher, transactionTemplate, new ObjectMapper(), cacheSystem);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(userVideoTagService.addTagsToSavedVideosOfUser(eq("user"), anyMap())).thenAnswer(invocation -> {
+            Map<String, Set<String>> tagsOfVideo = invocation.getArgument(1);
+            tagsOfVideo.forEach((videoId, tags) -> written.put(videoId, new TreeSet<>(tags)));
+            return List.of();
+        });
+    }
+
+    ImportProgress importFile(String content, LibraryImportService.Format format) throws IOException {
+        Path file = Files.createTempFile("youtag-import-test", null);
+        Files.writeString(file, content);
+        ImportProgress progress = new ImportProgress("import", "user");
+        service.run(progress, file, format);
+        Assertions.assertFalse(Files.exists(file));
+        return progress;
+    }
+
+    @Test
+    void readsCsvWithHeaderCommentsAndQuotedCells() throws IOException {
+        ImportProgress progress = importFile("""
+                videoId,tags
+                # exported library
+
+                a1, Rock ,"rock, live"
+                "b2","say \"\"hi\"\"",  "spaced" , ,jazz,
+                a1,pop
+                """, LibraryImportService.Format.CSV);
+        Assertions.assertEquals(ImportProgress.Status.COMPLETED, progress.getStatus());
+        Assertions.assertEquals(3, progress.getRowsRead());
+        Assertions.assertEquals(3, progress.getRowsImported());
+        Assertions.assertEquals(0, progress.getRowsRejected());
+        Assertions.assertEquals(Map.of(
+                "a1", Set.of("rock", "rock, live", "pop"),
+                "b2", Set.of("say \"hi\"", "spaced", "jazz")), written);
+    }
+
+    @Test
+    void rejectsCsvRowsWithBrokenQuoting() throws IOException {
+        ImportProgress progress = importFile("""
+                a1,"rock, live
+                a2,"rock" live
+                a3,ro"ck
+                ,rock
+                a5,rock
+                """, LibraryImportService.Format.CSV);
+        Assertions.assertEquals(ImportProgress.Status.COMPLETED, progress.getStatus());
+        Assertions.assertEquals(5, progress.getRowsRead());
+        Assertions.assertEquals(4, progress.getRowsRejected());
+        Assertions.assertEquals(1, progress.getRowsImported());
+        Assertions.assertEquals(List.of(
+                "row 1: quote of cell 2 is not closed",
+                "row 2: text after the closing quote of cell 2",
+                "row 3: quote inside unquoted cell 2",
+                "row 4: video id must have 1 to 50 characters"), progress.getErrors());
+        Assertions.assertEquals(Map.of("a5", Set.of("rock")), written);
+    }
+
+    @Test
+    void csvHeaderIsOnlyRecognizedOnFirstRow() throws IOException {
+        ImportProgress progress = importFile("a1,rock\nvideoId,tags\n", LibraryImportService.Format.CSV);
+        Assertions.assertEquals(2, progress.getRowsImported());
+        Assertions.assertEquals(Set.of("a1", "videoId"), written.keySet());
+    }
+
+    @Test
+    void readsJsonArray() throws IOException {
+        ImportProgress progress = importFile("""
+                [{"videoId": "a1", "tags": ["Rock", "rock, live", null, " "]},
+                 {"videoId": "b2"},
+                 {"tags": ["jazz"]}]
+                """, LibraryImportService.Format.JSON);
+        Assertions.assertEquals(ImportProgress.Status.COMPLETED, progress.getStatus());
+        Assertions.assertEquals(3, progress.getRowsRead());
+        Assertions.assertEquals(List.of("row 3: video id must have 1 to 50 characters"), progress.getErrors());
+        Assertions.assertEquals(Map.of("a1", Set.of("rock", "rock, live"), "b2", Set.of()), written);
+    }
+
+    @Test
+    void jsonThatIsNotAnArrayFailsImport() throws IOException {
+        ImportProgress progress = importFile("{\"videoId\": \"a1\"}", LibraryImportService.Format.JSON);
+        Assertions.assertEquals(ImportProgress.Status.FAILED, progress.getStatus());
+        Assertions.assertEquals("expected an array of videos", progress.getFailure());
+        Assertions.assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void jsonWithRowThatIsNotAVideoFailsImport() throws IOException {
+        ImportProgress progress = importFile("[{\"videoId\": \"a1\"}, \"b2\"]", LibraryImportService.Format.JSON);
+        Assertions.assertEquals(ImportProgress.Status.FAILED, progress.getStatus());
+        Assertions.assertEquals("expected a video at row 2", progress.getFailure());
+        Assertions.assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void malformedJsonFailsImport() throws IOException {
+        ImportProgress progress = importFile("[{\"videoId\": ", LibraryImportService.Format.JSON);
+        Assertions.assertEquals(ImportProgress.Status.FAILED, progress.getStatus());
+        Assertions.assertNotNull(progress.getFailure());
+    }
+
+    @Test
+    void tooLargeUploadIsRefusedAndUserCanImportAgain() throws Throwable {
+        InputStream tooLarge = new InputStream() {
+            long left = LibraryImportService.MAX_UPLOAD_BYTES + 1;
+
+            @Override
+            public int read() {
+                return left-- > 0 ? 'a' : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (left <= 0) {
+                    return -1;
+                }
+                int read = (int) Math.min(len, left);
+                Arrays.fill(b, off, off + read, (byte) 'a');
+                left -= read;
+                return read;
+            }
+        };
+        InvalidImport e = Assertions.assertThrows(InvalidImport.class, () -> service.startImport("user", tooLarge, LibraryImportService.Format.CSV));
+        Assertions.assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getCode());
+        Assertions.assertNotNull(service.startImport("user", InputStream.nullInputStream(), LibraryImportService.Format.CSV));
+    }
+}
@@ -0,0 +1,82 @@
+package dev.kuku.youtagserver.shared.helper;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class BoundedCacheTest {
+
+    @Test
+    void staysWithinMaximumWeight() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 0, null);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+        Assertions.assertTrue(cache.estimatedSize() <= 100);
+        Assertions.assertTrue(cache.weightedSize() <= 100);
+    }
+
+    @Test
+    void frequentKeysSurviveScan() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 0, null);
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, "value");
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.get("hot" + i);
+            }
+        }
+        // One-hit wonders should not be able to push out the popular keys
+        for (int i = 0; i < 5_000; i++) {
+            cache.put("cold" + i, "value");
+        }
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get("hot" + i) != null) {
+                survivors++;
+            }
+        }
+        Assertions.assertTrue(survivors >= 45, "Only " + survivors + " hot keys survived");
+    }
+
+    @Test
+    void respectsWeigher() {
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 0, (key, value) -> value.length());
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "0123456789");
+        }
+        Assertions.assertTrue(cache.weightedSize() <= 100);
+        Assertions.assertTrue(cache.estimatedSize() <= 10);
+    }
+
+    @Test
+    void expiresEntries() {
+        AtomicLong time = new AtomicLong();
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 1_000, null, time::get);
+        cache.put("a", "1");
+        cache.put("b", "2", 5_000);
+        cache.put("c", "3", 0);
+        time.set(1_000);
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals("2", cache.get("b"));
+        time.set(10_000);
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    void invalidatesEntries() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 0, null);
+        cache.put("a", "1");
+        cache.put("a", "2");
+        Assertions.assertEquals("2", cache.get("a"));
+        cache.invalidate("a");
+        Assertions.assertNull(cache.get("a"));
+        cache.put("b", "1");
+        cache.invalidateAll();
+        Assertions.assertEquals(0, cache.estimatedSize());
+        Assertions.assertEquals(0, cache.weightedSize());
+    }
+}
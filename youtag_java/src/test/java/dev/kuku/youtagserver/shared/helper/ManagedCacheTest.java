@@ -0,0 +1,68 @@
+package dev.kuku.youtagserver.shared.helper;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class ManagedCacheTest {
+    final AtomicLong time = new AtomicLong();
+    final AtomicInteger loads = new AtomicInteger();
+
+    ManagedCache<String> newCache() {
+        return new ManagedCache<>("test", CacheSpec.ofSize(100),
+                key -> key.startsWith("missing") ? null : key + loads.incrementAndGet(),
+                value -> Duration.ofNanos(1_000),
+                Runnable::run,
+                time::get);
+    }
+
+    @Test
+    void loadsOnceAndServesFromMemory() {
+        var cache = newCache();
+        Assertions.assertEquals("a1", cache.get("a"));
+        Assertions.assertEquals("a1", cache.get("a"));
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertNull(cache.get("missing"));
+    }
+
+    @Test
+    void bulkLoadsOnlyMissesAndRemembersMissingKeys() {
+        var cache = newCache();
+        cache.get("a");
+        var values = cache.getAll(List.of("b", "missing", "a"));
+        Assertions.assertEquals(List.of("b", "a"), List.copyOf(values.keySet()));
+        Assertions.assertEquals("a1", values.get("a"));
+        Assertions.assertEquals(2, loads.get());
+
+        cache.getAll(List.of("a", "b", "missing"));
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void refreshesAheadOfExpiry() {
+        var cache = newCache();
+        cache.get("a");
+        time.set(900);
+        // Served the old value while the refresh replaced it
+        Assertions.assertEquals("a1", cache.get("a"));
+        Assertions.assertEquals("a2", cache.getIfPresent("a"));
+        time.set(1_500);
+        Assertions.assertEquals("a2", cache.get("a"));
+        time.set(5_000);
+        Assertions.assertEquals("a3", cache.get("a"));
+    }
+
+    @Test
+    void invalidates() {
+        var cache = newCache();
+        cache.get("a");
+        cache.get("b");
+        cache.invalidateAll(List.of("a", "b"));
+        Assertions.assertNull(cache.getIfPresent("a"));
+        Assertions.assertNull(cache.getIfPresent("b"));
+    }
+}
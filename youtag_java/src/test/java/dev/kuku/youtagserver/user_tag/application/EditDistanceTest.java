@@ -0,0 +1,21 @@
+package dev.kuku.youtagserver.user_tag.application;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EditDistanceTest {
+    @Test
+    void countsEdits() {
+        Assertions.assertEquals(0, EditDistance.distance("java", "java", 2));
+        Assertions.assertEquals(1, EditDistance.distance("tutorail", "tutorial", 2));
+        Assertions.assertEquals(1, EditDistance.distance("jva", "java", 2));
+        Assertions.assertEquals(2, EditDistance.distance("pyhton3", "python", 2));
+        Assertions.assertEquals(1, EditDistance.distance("rusty", "rust", 1));
+    }
+
+    @Test
+    void stopsPastTheBound() {
+        Assertions.assertEquals(2, EditDistance.distance("kotlin", "java", 1));
+        Assertions.assertEquals(3, EditDistance.distance("abcdef", "uvwxyz", 2));
+    }
+}
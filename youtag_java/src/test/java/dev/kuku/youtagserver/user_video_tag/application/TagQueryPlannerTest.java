@@ -0,0 +1,55 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import dev.kuku.youtagserver.user_video_tag.api.exceptions.InvalidTagQuery;
+import dev.kuku.youtagserver.user_video_tag.domain.UserVideoTag;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class TagQueryPlannerTest {
+    final UserTagIndex index = UserTagIndex.of(List.of(
+            new UserVideoTag("u", "v1", "rust"),
+            new UserVideoTag("u", "v1", "async"),
+            new UserVideoTag("u", "v2", "rust"),
+            new UserVideoTag("u", "v2", "tokio"),
+            new UserVideoTag("u", "v2", "beginner"),
+            new UserVideoTag("u", "v3", "rust"),
+            new UserVideoTag("u", "v4", "machine learning")));
+
+    List<String> run(String query) throws InvalidTagQuery {
+        TagQuery parsed = TagQuery.parse(query);
+        return index.read(i -> i.sortedVideoIdsAfter(new TagQueryPlanner(i, false).execute(parsed), null, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void evaluatesBooleanQueries() throws InvalidTagQuery {
+        Assertions.assertEquals(List.of("v1"), run("rust & (async | tokio) & !beginner"));
+        Assertions.assertEquals(List.of("v1", "v2"), run("Rust & (async | tokio)"));
+        Assertions.assertEquals(List.of("v3", "v4"), run("!async & !tokio"));
+        Assertions.assertEquals(List.of("v4"), run("machine learning | \"c++\""));
+        Assertions.assertEquals(List.of(), run("rust & unknown"));
+    }
+
+    @Test
+    void explainsAndShortCircuits() throws InvalidTagQuery {
+        TagQuery parsed = TagQuery.parse("rust & unknown & !beginner");
+        List<String> plan = index.read(i -> {
+            TagQueryPlanner planner = new TagQueryPlanner(i, true);
+            planner.execute(parsed);
+            return planner.plan();
+        });
+        Assertions.assertEquals(4, plan.size());
+        Assertions.assertTrue(plan.get(0).startsWith("and (estimate=0 rows=0"));
+        Assertions.assertTrue(plan.get(1).contains("tag \"unknown\" (estimate=0) skipped"));
+        Assertions.assertTrue(plan.get(2).contains("tag \"rust\" (estimate=3) skipped"));
+        Assertions.assertTrue(plan.get(3).contains("except tag \"beginner\" (estimate=1) skipped"));
+    }
+
+    @Test
+    void rejectsMalformedQueries() {
+        for (String query : List.of("", "rust &", "(rust", "rust)", "!", "\"rust", "a | | b")) {
+            Assertions.assertThrows(InvalidTagQuery.class, () -> TagQuery.parse(query), query);
+        }
+    }
+}
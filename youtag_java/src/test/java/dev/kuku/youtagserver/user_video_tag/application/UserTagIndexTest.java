@@ -0,0 +1,82 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import dev.kuku.youtagserver.user_video_tag.domain.UserVideoTag;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+class UserTagIndexTest {
+    final UserTagIndex index = UserTagIndex.of(List.of(
+            new UserVideoTag("u", "v2", "music"),
+            new UserVideoTag("u", "v2", "live"),
+            new UserVideoTag("u", "v1", "music"),
+            new UserVideoTag("u", "v3", "live")));
+
+    @Test
+    void intersectsTags() {
+        Assertions.assertEquals(List.of("v1", "v2"), index.videosWithAllTags(List.of("music")));
+        Assertions.assertEquals(List.of("v2"), index.videosWithAllTags(List.of("live", "music")));
+        Assertions.assertEquals(1, index.countWithAllTags(List.of("music", "live")));
+        Assertions.assertEquals(0, index.countWithAllTags(List.of("music", "unknown")));
+        Assertions.assertEquals(List.of(), index.videosWithAllTags(List.of()));
+    }
+
+    @Test
+    void appliesChanges() {
+        index.add(List.of("v3", "v4"), List.of("music"));
+        Assertions.assertEquals(List.of("v2", "v3"), index.videosWithAllTags(List.of("music", "live")));
+
+        index.remove(List.of("v2"), List.of("live"));
+        Assertions.assertEquals(List.of("v3"), index.videosWithAllTags(List.of("music", "live")));
+
+        index.removeVideos(List.of("v3"));
+        Assertions.assertEquals(0, index.countWithAllTags(List.of("live")));
+        Assertions.assertEquals(3, index.countWithAllTags(List.of("music")));
+        Assertions.assertEquals(3, index.videoCount());
+    }
+
+    @Test
+    void pagesInIdOrderIncludingAddedVideos() {
+        index.add(List.of("v25", "v0"), List.of("music"));
+        RoaringBitmap matches = index.read(i -> i.videosOf("music"));
+        Assertions.assertEquals(List.of("v0", "v1"), index.read(i -> i.sortedVideoIdsAfter(matches, null, 2)));
+        Assertions.assertEquals(List.of("v2", "v25"), index.read(i -> i.sortedVideoIdsAfter(matches, "v1", 2)));
+        Assertions.assertEquals(List.of("v25"), index.read(i -> i.sortedVideoIdsAfter(matches, "v20", 2)));
+        Assertions.assertEquals(List.of(), index.read(i -> i.sortedVideoIdsAfter(matches, "v25", 2)));
+    }
+
+    @Test
+    void videosLosingTheirLastTagAreDropped() {
+        index.remove(List.of("v1", "v2"), List.of("music"));
+        Assertions.assertEquals(2, index.videoCount());
+        Assertions.assertEquals(List.of("v2", "v3"), index.videosWithAllTags(List.of("live")));
+    }
+
+    @Test
+    void rebuildsAfterManyChanges() {
+        int weight = index.weight();
+        List<String> added = IntStream.rangeClosed(0, UserTagIndex.MAX_UNSORTED).mapToObj(i -> "w" + i).toList();
+        index.add(added, List.of("bulk"));
+        Assertions.assertEquals(List.of("w0", "w1", "w10"), index.read(i -> i.sortedVideoIdsAfter(i.videosOf("bulk"), null, 3)));
+        Assertions.assertEquals(added.size() + 3, index.videoCount());
+
+        index.removeVideos(added);
+        Assertions.assertEquals(3, index.videoCount());
+        Assertions.assertEquals(weight, index.weight());
+        Assertions.assertEquals(List.of("v1", "v2"), index.videosWithAllTags(List.of("music")));
+    }
+
+    @Test
+    void countsTopTagsOfMatches() {
+        index.add(List.of("v1", "v2", "v3"), List.of("rock"));
+        index.add(List.of("v4"), List.of("jazz"));
+        var matches = index.read(i -> new TagQueryPlanner(i, false).execute(TagQuery.allOf(List.of("music"))));
+        Assertions.assertEquals(List.of(Map.entry("rock", 2L), Map.entry("live", 1L)), index.topTagsOf(matches, Set.of("music"), 5));
+        Assertions.assertEquals(List.of(Map.entry("rock", 2L)), index.topTagsOf(matches, Set.of("music"), 1));
+    }
+}
@@ -0,0 +1,62 @@
+package dev.kuku.youtagserver.user_video_tag.application;
+
+import dev.kuku.youtagserver.user_tag.api.UserTagService;
+import dev.kuku.youtagserver.user_video_tag.domain.UserVideoTag;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.TagCooccurrenceRepo;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.UserVideoTagRepo;
+import dev.kuku.youtagserver.user_video_tag.infrastructure.VideoTagStatRepo;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserVideoTagServiceImplTest {
+    @Mock
+    UserVideoTagRepo repo;
+    @Mock
+    UserTagIndexStore tagIndexStore;
+    @Mock
+    UserTagService userTagService;
+    @Mock
+    VideoTagStatRepo videoTagStatRepo;
+    @Mock
+    TagCooccurrenceRepo tagCooccurrenceRepo;
+
+    @Test
+    void deletingTagsOfVideoInSeveralBatchesUncountsEveryPair() {
+        var service = new UserVideoTagServiceImpl(repo, tagIndexStore, userTagService,
+                new TagStatsUpdater(repo, videoTagStatRepo, tagCooccurrenceRepo), videoTagStatRepo, tagCooccurrenceRepo);
+        when(repo.deleteSomeByUserId("u", 1)).thenReturn(
+                List.of(new UserVideoTag("u", "v", "rock")),
+                List.of(new UserVideoTag("u", "v", "live")));
+        when(repo.findAllByUserIdAndVideoIdIn("u", Set.of("v"), Pageable.unpaged())).thenReturn(
+                List.of(new UserVideoTag("u", "v", "live")),
+                List.of());
+        Map<Map.Entry<String, String>, Long> pairs = new HashMap<>(Map.of(Map.entry("rock", "live"), 1L, Map.entry("live", "rock"), 1L));
+        doAnswer(invocation -> {
+            String[] tags = invocation.getArgument(0);
+            String[] otherTags = invocation.getArgument(1);
+            long[] deltas = invocation.getArgument(2);
+            for (int i = 0; i < tags.length; i++) {
+                pairs.merge(Map.entry(tags[i], otherTags[i]), deltas[i], Long::sum);
+            }
+            return null;
+        }).when(tagCooccurrenceRepo).add(any(), any(), any());
+
+        Assertions.assertEquals(1, service.deleteAllTagsFromAllVideosOfUser("u", 1));
+        Assertions.assertEquals(1, service.deleteAllTagsFromAllVideosOfUser("u", 1));
+        Assertions.assertEquals(Map.of(Map.entry("rock", "live"), 0L, Map.entry("live", "rock"), 0L), pairs);
+    }
+}
@@ -0,0 +1,32 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+class PageHeadTest {
+
+    @Test
+    void readsHeadAndStopsBeforeBody() throws IOException {
+        StreamParser parser = new StreamParser(Parser.htmlParser()).parse("""
+                <html><head><script>var big = 1;</script><title>A video - YouTube</title>
+                <meta name="description" content="About it"><link rel="icon" href="/favicon.ico">
+                <meta property="og:image" content="https://i.ytimg.com/vi/a/hqdefault.jpg"></head>
+                <body><div id="player"></div></body></html>
+                """, "");
+        Assertions.assertEquals(new PageHead("A video - YouTube", "About it", "https://i.ytimg.com/vi/a/hqdefault.jpg"), PageHead.read(parser));
+        Assertions.assertNull(parser.document().getElementById("player"));
+    }
+
+    @Test
+    void missingValuesAreEmpty() throws IOException {
+        StreamParser parser = new StreamParser(Parser.htmlParser()).parse("""
+                <html><head><title>Only a title</title></head>
+                <body><meta name="description" content="Not in the head"></body></html>
+                """, "");
+        Assertions.assertEquals(new PageHead("Only a title", "", ""), PageHead.read(parser));
+    }
+}
@@ -0,0 +1,51 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provider that answers from memory after a fixed latency, so the provider chain can be tested and timed offline
+ */
+class StubVideoInfoProvider implements VideoInfoProvider {
+    enum Outcome {ANSWER, PARTIAL, UNANSWERED, NOT_FOUND, FAIL, THROW, CRASH}
+
+    private final String name;
+    private final Duration latency;
+    volatile Outcome outcome;
+    final AtomicInteger calls = new AtomicInteger();
+
+    StubVideoInfoProvider(String name, Outcome outcome, Duration latency) {
+        this.name = name;
+        this.outcome = outcome;
+        this.latency = latency;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public YoutubeVideoInfoDto fetch(String videoId) throws IOException, InvalidVideoId {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return switch (outcome) {
+            case ANSWER -> new YoutubeVideoInfoDto(videoId, name + " " + videoId, name + " about " + videoId, "");
+            case PARTIAL -> new YoutubeVideoInfoDto(videoId, name + " " + videoId, null, "");
+            case UNANSWERED -> null;
+            case NOT_FOUND -> throw new InvalidVideoId(videoId);
+            case FAIL -> throw new IOException(name + " is down");
+            case THROW -> throw new IllegalArgumentException(name + " has a bug");
+            case CRASH -> throw new AssertionError(name + " crashed");
+        };
+    }
+}
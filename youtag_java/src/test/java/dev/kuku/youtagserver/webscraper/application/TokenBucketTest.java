@@ -0,0 +1,36 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class TokenBucketTest {
+
+    @Test
+    void burstThenSteadyRate() {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        long second = TimeUnit.SECONDS.toNanos(1);
+        Assertions.assertEquals(0, bucket.reserve(0));
+        Assertions.assertEquals(0, bucket.reserve(0));
+        // Empty. The next token comes after a tenth of a second
+        Assertions.assertEquals(-1, bucket.reserve(0));
+        Assertions.assertEquals(second / 10, bucket.reserve(second));
+        // The reserved token is taken, so the one after waits twice as long
+        Assertions.assertEquals(2 * second / 10, bucket.reserve(second));
+        now.addAndGet(second);
+        Assertions.assertEquals(0, bucket.reserve(0));
+    }
+
+    @Test
+    void doesNotSaveUpMoreThanBurst() {
+        AtomicLong now = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(10, 2, now::get);
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+        Assertions.assertEquals(0, bucket.reserve(0));
+        Assertions.assertEquals(0, bucket.reserve(0));
+        Assertions.assertEquals(-1, bucket.reserve(0));
+    }
+}
@@ -0,0 +1,188 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import dev.kuku.youtagserver.webscraper.api.exceptions.ScraperUnavailable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static dev.kuku.youtagserver.webscraper.application.StubVideoInfoProvider.Outcome.ANSWER;
+import static dev.kuku.youtagserver.webscraper.application.StubVideoInfoProvider.Outcome.CRASH;
+import static dev.kuku.youtagserver.webscraper.application.StubVideoInfoProvider.Outcome.FAIL;
+import static dev.kuku.youtagserver.webscraper.application.StubVideoInfoProvider.Outcome.NOT_FOUND;
+import static dev.kuku.youtagserver.webscraper.application.StubVideoInfoProvider.Outcome.PARTIAL;
+import static dev.kuku.youtagserver.webscraper.application.StubVideoInfoProvider.Outcome.THROW;
+import static dev.kuku.youtagserver.webscraper.application.StubVideoInfoProvider.Outcome.UNANSWERED;
+
+class VideoInfoProviderChainTest {
+    final StubVideoInfoProvider cheap = new StubVideoInfoProvider("cheap", ANSWER, Duration.ofMillis(1));
+    final StubVideoInfoProvider fallback = new StubVideoInfoProvider("fallback", ANSWER, Duration.ofMillis(5));
+
+    YoutubeScrapperServiceImpl scrapper(List<String> order) {
+        return scrapper(order, false);
+    }
+
+    YoutubeScrapperServiceImpl scrapper(List<String> order, boolean fillInDescription) {
+        return new YoutubeScrapperServiceImpl(YoutubeScrapperServiceImpl.inOrder(List.of(fallback, cheap), order),
+                new TokenBucket(1000, 1000), () -> new CircuitBreaker(2, Duration.ofMinutes(1)), Duration.ofMillis(1), fillInDescription);
+    }
+
+    @Test
+    void asksProvidersInConfiguredOrder() throws InvalidVideoId, ScraperUnavailable {
+        Assertions.assertEquals("cheap a", scrapper(List.of("cheap", "fallback")).getYoutubeVideoInfo("a").title());
+        Assertions.assertEquals("fallback a", scrapper(List.of("fallback", "cheap")).getYoutubeVideoInfo("a").title());
+        Assertions.assertEquals(1, cheap.calls.get());
+        Assertions.assertEquals(1, fallback.calls.get());
+    }
+
+    @Test
+    void unknownProviderFailsAtStartup() {
+        Assertions.assertThrows(IllegalStateException.class, () -> scrapper(List.of("cheap", "typo")));
+        Assertions.assertThrows(IllegalStateException.class, () -> scrapper(List.of()));
+    }
+
+    @Test
+    void fallsBackAndSkipsFailingProvider() throws InvalidVideoId, ScraperUnavailable {
+        cheap.outcome = FAIL;
+        var scrapper = scrapper(List.of("cheap", "fallback"));
+        Assertions.assertEquals("fallback a", scrapper.getYoutubeVideoInfo("a").title());
+        Assertions.assertEquals("fallback b", scrapper.getYoutubeVideoInfo("b").title());
+        // Two failures opened the circuit of cheap, so it isn't called anymore
+        Assertions.assertEquals("fallback c", scrapper.getYoutubeVideoInfo("c").title());
+        Assertions.assertEquals(2, cheap.calls.get());
+        var stats = scrapper.getProviderStats();
+        Assertions.assertEquals("cheap", stats.get(0).provider());
+        Assertions.assertEquals(2, stats.get(0).failed());
+        Assertions.assertEquals(1, stats.get(0).skipped());
+        Assertions.assertEquals(3, stats.get(1).answered());
+        Assertions.assertTrue(stats.get(1).averageLatencyMillis() >= 5);
+    }
+
+    @Test
+    void notFoundStopsChain() {
+        cheap.outcome = NOT_FOUND;
+        Assertions.assertThrows(InvalidVideoId.class, () -> scrapper(List.of("cheap", "fallback")).getYoutubeVideoInfo("a"));
+        Assertions.assertEquals(0, fallback.calls.get());
+    }
+
+    @Test
+    void nobodyKnowingVideoIsUnavailableWithoutRetry() {
+        cheap.outcome = UNANSWERED;
+        fallback.outcome = UNANSWERED;
+        Assertions.assertThrows(ScraperUnavailable.class, () -> scrapper(List.of("cheap", "fallback")).getYoutubeVideoInfo("a"));
+        Assertions.assertEquals(1, cheap.calls.get());
+        Assertions.assertEquals(1, fallback.calls.get());
+    }
+
+    @Test
+    void concurrentRequestsShareOneFetch() throws Throwable {
+        var slow = new StubVideoInfoProvider("slow", ANSWER, Duration.ofMillis(200));
+        var scrapper = new YoutubeScrapperServiceImpl(List.of(slow), new TokenBucket(1000, 1000), () -> new CircuitBreaker(2, Duration.ofMinutes(1)), Duration.ofMillis(1), false);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<YoutubeVideoInfoDto>> requests = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                requests.add(executor.submit(() -> {
+                    try {
+                        return scrapper.getYoutubeVideoInfo("hot");
+                    } catch (InvalidVideoId | ScraperUnavailable e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for (var request : requests) {
+                Assertions.assertEquals("slow hot", request.get().title());
+            }
+        }
+        Assertions.assertEquals(1, slow.calls.get());
+        // Served from the recent infos afterwards
+        scrapper.getYoutubeVideoInfo("hot");
+        Assertions.assertEquals(1, slow.calls.get());
+    }
+
+    @Test
+    void failuresAreNotCached() {
+        cheap.outcome = NOT_FOUND;
+        var scrapper = scrapper(List.of("cheap"));
+        Assertions.assertThrows(InvalidVideoId.class, () -> scrapper.getYoutubeVideoInfo("a"));
+        Assertions.assertThrows(InvalidVideoId.class, () -> scrapper.getYoutubeVideoInfo("a"));
+        Assertions.assertEquals(2, cheap.calls.get());
+    }
+
+    @Test
+    void providerBugDuringTrialDoesNotBlockProvider() throws Throwable {
+        AtomicLong now = new AtomicLong();
+        var scrapper = new YoutubeScrapperServiceImpl(List.of(cheap, fallback), new TokenBucket(1000, 1000),
+                () -> new CircuitBreaker(1, Duration.ofSeconds(30), now::get), Duration.ofMillis(1), false);
+        cheap.outcome = THROW;
+        Assertions.assertEquals("fallback a", scrapper.getYoutubeVideoInfo("a").title());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, scrapper.circuitState("cheap"));
+        // The trial throws as well and opens the breaker again instead of leaving it half open for good
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        Assertions.assertEquals("fallback b", scrapper.getYoutubeVideoInfo("b").title());
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, scrapper.circuitState("cheap"));
+        cheap.outcome = ANSWER;
+        now.addAndGet(Duration.ofSeconds(30).toNanos());
+        Assertions.assertEquals("cheap c", scrapper.getYoutubeVideoInfo("c").title());
+        Assertions.assertEquals(3, cheap.calls.get());
+    }
+
+    @Test
+    void requestsJoiningCrashedFetchDoNotHang() throws Throwable {
+        var crashing = new StubVideoInfoProvider("crashing", CRASH, Duration.ofMillis(200));
+        var scrapper = new YoutubeScrapperServiceImpl(List.of(crashing), new TokenBucket(1000, 1000), () -> new CircuitBreaker(2, Duration.ofMinutes(1)), Duration.ofMillis(1), false);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<YoutubeVideoInfoDto>> requests = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                requests.add(executor.submit(() -> {
+                    try {
+                        return scrapper.getYoutubeVideoInfo("hot");
+                    } catch (InvalidVideoId | ScraperUnavailable e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for (var request : requests) {
+                Assertions.assertThrows(ExecutionException.class, () -> request.get(5, TimeUnit.SECONDS));
+            }
+        }
+        Assertions.assertEquals(1, crashing.calls.get());
+    }
+
+    @Test
+    void partialAnswerIsUsedWithoutAskingNextProvider() throws Throwable {
+        cheap.outcome = PARTIAL;
+        var info = scrapper(List.of("cheap", "fallback")).getYoutubeVideoInfo("new");
+        Assertions.assertEquals("cheap new", info.title());
+        Assertions.assertNull(info.description());
+        Assertions.assertEquals(0, fallback.calls.get());
+    }
+
+    @Test
+    void partialAnswerGetsDescriptionFromNextProvider() throws Throwable {
+        cheap.outcome = PARTIAL;
+        var info = scrapper(List.of("cheap", "fallback"), true).getYoutubeVideoInfo("new");
+        Assertions.assertEquals("cheap new", info.title());
+        Assertions.assertEquals("fallback about new", info.description());
+        Assertions.assertEquals(1, fallback.calls.get());
+    }
+
+    @Test
+    void partialAnswerIsUsedWhenNoProviderHasDescription() throws Throwable {
+        cheap.outcome = PARTIAL;
+        fallback.outcome = FAIL;
+        var info = scrapper(List.of("cheap", "fallback"), true).getYoutubeVideoInfo("new");
+        Assertions.assertEquals("cheap new", info.title());
+        Assertions.assertNull(info.description());
+        // Not retried just for the description
+        Assertions.assertEquals(1, fallback.calls.get());
+    }
+}
@@ -0,0 +1,216 @@
+package dev.kuku.youtagserver.webscraper.application;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.kuku.youtagserver.webscraper.api.dto.VideoInfoProviderStats;
+import dev.kuku.youtagserver.webscraper.api.dto.YoutubeVideoInfoDto;
+import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import dev.kuku.youtagserver.webscraper.api.exceptions.ScraperUnavailable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the scraper with the oembed and html providers against a local server that stands in for youtube. The id of
+ * the video decides how it answers
+ */
+class YoutubeScrapperServiceImplStubTest {
+    static final long SLOW_MILLIS = 300;
+    static final int LARGE_SCRIPT_CHARS = 4 * 1024 * 1024;
+    HttpServer server;
+    /**
+     * Requests to each endpoint for each video, as endpoint:id
+     */
+    final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    String base;
+    YoutubeScrapperServiceImpl scrapperService;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/watch", this::answerPage);
+        server.createContext("/oembed", this::answerOEmbed);
+        server.start();
+        base = "http://localhost:" + server.getAddress().getPort();
+        scrapperService = scrapper(false);
+    }
+
+    YoutubeScrapperServiceImpl scrapper(boolean fillInDescription) {
+        return new YoutubeScrapperServiceImpl(
+                List.of(new OEmbedProvider(base + "/oembed?format=json&url=", base + "/watch?v="), new HtmlPageProvider(base + "/watch?v=")),
+                new TokenBucket(1000, 1000), () -> new CircuitBreaker(3, Duration.ofMinutes(1)), Duration.ofMillis(1), fillInDescription);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        scrapperService.shutdown();
+    }
+
+    int hits(String endpoint, String id) {
+        AtomicInteger count = hits.get(endpoint + ":" + id);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return status for a failing id, or 0 to answer normally
+     */
+    int failure(String endpoint, String id) {
+        int hit = hits.computeIfAbsent(endpoint + ":" + id, k -> new AtomicInteger()).incrementAndGet();
+        if (id.startsWith("missing")) {
+            return 404;
+        } else if (id.startsWith("down") || (id.startsWith("flaky") && hit <= 2)) {
+            return 503;
+        } else if (id.startsWith("slow")) {
+            try {
+                Thread.sleep(SLOW_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return 0;
+    }
+
+    void answerOEmbed(HttpExchange exchange) throws IOException {
+        String url = URLDecoder.decode(exchange.getRequestURI().getRawQuery(), StandardCharsets.UTF_8);
+        String id = url.substring(url.indexOf("v=") + "v=".length());
+        int status = failure("oembed", id);
+        if (status == 0 && (id.startsWith("private") || id.startsWith("large") || id.startsWith("bloated"))) {
+            status = 401;
+        }
+        String json = "{\"title\":\"Video " + id + "\",\"author_name\":\"Someone\",\"type\":\"video\"," +
+                "\"thumbnail_url\":\"https://i.ytimg.com/vi/" + id + "/hqdefault.jpg\"}";
+        respond(exchange, status == 0 ? 200 : status, "application/json", json);
+    }
+
+    void answerPage(HttpExchange exchange) throws IOException {
+        String id = exchange.getRequestURI().getQuery().substring("v=".length());
+        int status = failure("watch", id);
+        String script = "<script>var data = \"" + "x".repeat(LARGE_SCRIPT_CHARS) + "\";</script>";
+        String page = "<html><head>" + (id.startsWith("bloated") ? script : "") +
+                "<title>Video " + id + " - YouTube</title>" +
+                "<meta name=\"description\" content=\"About " + id + "\">" +
+                "<meta property=\"og:image\" content=\"https://i.ytimg.com/vi/" + id + "/hqdefault.jpg\">" +
+                "</head><body>" + (id.startsWith("large") ? script : "") + "</body></html>";
+        respond(exchange, status == 0 ? 200 : status, "text/html; charset=utf-8", page);
+    }
+
+    void respond(HttpExchange exchange, int status, String contentType, String content) throws IOException {
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        } catch (IOException e) {
+            //The scraper hangs up once it has read the head
+        }
+    }
+
+    @Test
+    void usesOEmbedWithoutDescriptionByDefault() throws InvalidVideoId, ScraperUnavailable {
+        var info = scrapperService.getYoutubeVideoInfo("ok1");
+        Assertions.assertEquals(new YoutubeVideoInfoDto("ok1", "Video ok1", null, "https://i.ytimg.com/vi/ok1/hqdefault.jpg"), info);
+        Assertions.assertEquals(1, hits("oembed", "ok1"));
+        Assertions.assertEquals(0, hits("watch", "ok1"));
+    }
+
+    @Test
+    void readsDescriptionMissingFromOEmbedFromPage() throws InvalidVideoId, ScraperUnavailable {
+        var fillingScrapper = scrapper(true);
+        try {
+            var info = fillingScrapper.getYoutubeVideoInfo("ok1");
+            Assertions.assertEquals(new YoutubeVideoInfoDto("ok1", "Video ok1", "About ok1", "https://i.ytimg.com/vi/ok1/hqdefault.jpg"), info);
+        } finally {
+            fillingScrapper.shutdown();
+        }
+        Assertions.assertEquals(1, hits("oembed", "ok1"));
+        Assertions.assertEquals(1, hits("watch", "ok1"));
+    }
+
+    @Test
+    void fallsBackToPageWhenOEmbedRefuses() throws InvalidVideoId, ScraperUnavailable {
+        var info = scrapperService.getYoutubeVideoInfo("private1");
+        Assertions.assertEquals(new YoutubeVideoInfoDto("private1", "Video private1", "About private1", "https://i.ytimg.com/vi/private1/hqdefault.jpg"), info);
+        Assertions.assertEquals(1, hits("oembed", "private1"));
+        Assertions.assertEquals(List.of(
+                        new VideoInfoProviderStats("oembed", 0, 1, 0, 0, 0, 0, 0),
+                        new VideoInfoProviderStats("html", 1, 0, 0, 0, 0, 0, 0)),
+                scrapperService.getProviderStats().stream()
+                        .map(stats -> new VideoInfoProviderStats(stats.provider(), stats.answered(), stats.unanswered(), stats.notFound(), stats.failed(), stats.skipped(), 0, 0))
+                        .toList());
+    }
+
+    @Test
+    void readsOnlyHeadOfLargePage() throws InvalidVideoId, ScraperUnavailable {
+        Assertions.assertEquals("Video large1", scrapperService.getYoutubeVideoInfo("large1").title());
+    }
+
+    @Test
+    void stopsReadingAfterByteBudget() throws InvalidVideoId, ScraperUnavailable {
+        var info = scrapperService.getYoutubeVideoInfo("bloated1");
+        Assertions.assertEquals("", info.title());
+        Assertions.assertEquals(1, hits("watch", "bloated1"));
+    }
+
+    @Test
+    void missingVideoIsInvalidWithoutRetry() {
+        Assertions.assertThrows(InvalidVideoId.class, () -> scrapperService.getYoutubeVideoInfo("missing1"));
+        Assertions.assertEquals(1, hits("oembed", "missing1"));
+        Assertions.assertEquals(1, hits("watch", "missing1"));
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, scrapperService.circuitState("oembed"));
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, scrapperService.circuitState("html"));
+    }
+
+    @Test
+    void retriesFailedRequests() throws InvalidVideoId, ScraperUnavailable {
+        Assertions.assertEquals("Video flaky1", scrapperService.getYoutubeVideoInfo("flaky1").title());
+        Assertions.assertEquals(3, hits("oembed", "flaky1"));
+        Assertions.assertEquals(2, hits("watch", "flaky1"));
+    }
+
+    @Test
+    void failingYoutubeIsUnavailableAndOpensCircuits() {
+        Assertions.assertThrows(ScraperUnavailable.class, () -> scrapperService.getYoutubeVideoInfo("down1"));
+        Assertions.assertEquals(YoutubeScrapperServiceImpl.MAX_ATTEMPTS, hits("oembed", "down1"));
+        Assertions.assertEquals(YoutubeScrapperServiceImpl.MAX_ATTEMPTS, hits("watch", "down1"));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, scrapperService.circuitState("oembed"));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, scrapperService.circuitState("html"));
+        // Healthy videos are refused without calling youtube until a circuit is closed again
+        Assertions.assertThrows(ScraperUnavailable.class, () -> scrapperService.getYoutubeVideoInfo("ok2"));
+        Assertions.assertEquals(0, hits("oembed", "ok2") + hits("watch", "ok2"));
+    }
+
+    @Test
+    void fetchesManyVideosConcurrently() {
+        List<String> ids = IntStream.range(0, YoutubeScrapperServiceImpl.MAX_CONCURRENT_FETCHES).mapToObj(i -> "slow" + i).toList();
+        long start = System.nanoTime();
+        var result = scrapperService.getYoutubeVideoInfos(ids);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertEquals(ids.size(), result.videoInfos().size());
+        Assertions.assertTrue(elapsedMillis < SLOW_MILLIS * ids.size() / 4, "took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void splitsInvalidAndUnavailableVideos() {
+        var result = scrapperService.getYoutubeVideoInfos(List.of("ok3", "missing2", "down2"));
+        Assertions.assertEquals(List.of("ok3"), result.videoInfos().stream().map(YoutubeVideoInfoDto::videoID).toList());
+        Assertions.assertEquals(Set.of("missing2"), result.invalidVideoIds());
+        Assertions.assertEquals(Set.of("down2"), result.unavailableVideoIds());
+    }
+}
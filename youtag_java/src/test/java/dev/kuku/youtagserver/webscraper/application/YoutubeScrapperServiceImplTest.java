@@ -1,16 +1,19 @@
 package dev.kuku.youtagserver.webscraper.application;
 
 import dev.kuku.youtagserver.webscraper.api.exceptions.InvalidVideoId;
+import dev.kuku.youtagserver.webscraper.api.exceptions.ScraperUnavailable;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 @Slf4j
 class YoutubeScrapperServiceImplTest {
-    final YoutubeScrapperServiceImpl scrapperService = new YoutubeScrapperServiceImpl();
+    final YoutubeScrapperServiceImpl scrapperService = new YoutubeScrapperServiceImpl(List.of(new OEmbedProvider(), new HtmlPageProvider()), List.of("oembed", "html"), false);
 
     @Test
-    void testYoutubeScrapper() throws InvalidVideoId {
+    void testYoutubeScrapper() throws InvalidVideoId, ScraperUnavailable {
         var info = scrapperService.getYoutubeVideoInfo("-wLYuox7YE8");
         log.info(info.toString());
         Assertions.assertNotNull(info);